@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.5.0"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.smartpark"
@@ -23,7 +24,7 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.springframework.boot:spring-boot-starter-websocket")
 	implementation("com.hivemq:hivemq-mqtt-client:1.3.9")
-	implementation("org.json:json:20231013")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
 	runtimeOnly("com.h2database:h2")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
@@ -32,3 +33,11 @@ dependencies {
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+// Benchmarks live in src/jmh/java. Run all with `./gradlew jmh`, or a subset
+// with `./gradlew jmh -Pjmh.includes=SensorPayloadBenchmark`.
+jmh {
+	jmhVersion = "1.37"
+	resultFormat = "JSON"
+	project.findProperty("jmh.includes")?.let { includes = listOf(it.toString()) }
+}
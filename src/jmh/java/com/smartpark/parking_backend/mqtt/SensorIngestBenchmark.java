@@ -0,0 +1,110 @@
+package com.smartpark.parking_backend.mqtt;
+
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import com.smartpark.parking_backend.service.OccupancyStore;
+import com.smartpark.parking_backend.service.ParkingService;
+import com.smartpark.parking_backend.support.BenchmarkFixtures;
+import com.smartpark.parking_backend.support.StubSessions;
+import com.smartpark.parking_backend.websocket.SlotWebSocketPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor event to {@link ParkingService} to publisher, without the MQTT
+ * client. Every event flips its slot, so each call does a real store update,
+ * write-behind hand-off and delta broadcast; unchanged readings are cheaper
+ * and would flatter the numbers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorIngestBenchmark {
+
+    @Param({"100", "10000"})
+    public int slotCount;
+
+    @Param({"0", "100"})
+    public int sessionCount;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private MqttMessageListener listener;
+    private SensorEventPipeline pipeline;
+    private SlotWebSocketPublisher publisher;
+    private PrintStream stdout;
+
+    private long eventCounter;
+    private List<List<SensorEvent>> batches;
+    private int batchCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ParkingLot lot = BenchmarkFixtures.lot(1L);
+        publisher = BenchmarkFixtures.publisher();
+        StubSessions.register(publisher, sessionCount, StubSessions.Behaviour.FAST);
+        BenchmarkFixtures.InMemorySlots slots = BenchmarkFixtures.slotRepository(BenchmarkFixtures.slots(lot, slotCount));
+        ParkingLotRepository lots = BenchmarkFixtures.lotRepository(List.of(lot));
+        ParkingService parkingService = BenchmarkFixtures.parkingService(slots, lots, publisher);
+        listener = new MqttMessageListener(parkingService);
+        // flush() is measured directly, so the debounce store is never consulted
+        pipeline = new SensorEventPipeline(BenchmarkFixtures.ingestProperties(batchSize), listener, parkingService,
+            new OccupancyStore(slots.repository(), lots));
+
+        // two batches per window of sensors, first occupies them and the next frees them again
+        batches = new ArrayList<>();
+        int windows = Math.max(1, slotCount / batchSize);
+        for (int round = 0; round < 2; round++) {
+            for (int w = 0; w < windows; w++) {
+                List<SensorEvent> batch = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    int sensor = 1 + (w * batchSize + i) % slotCount;
+                    batch.add(new SensorEvent("sensor-" + sensor, (long) sensor, round == 0));
+                }
+                batches.add(batch);
+            }
+        }
+        stdout = BenchmarkFixtures.silenceStdout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+        publisher.shutdown();
+    }
+
+    @Benchmark
+    public void applySingleEvent() {
+        long n = eventCounter++;
+        int sensor = 1 + (int) (n % slotCount);
+        boolean occupied = (n / slotCount) % 2 == 0;
+        listener.applyEvent(new SensorEvent("sensor-" + sensor, (long) sensor, occupied));
+    }
+
+    @Benchmark
+    public void flushCoalescedBatch() {
+        List<SensorEvent> batch = batches.get(batchCursor);
+        batchCursor = (batchCursor + 1) % batches.size();
+        pipeline.flush(batch);
+    }
+}
@@ -0,0 +1,102 @@
+package com.smartpark.parking_backend.mqtt;
+
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.support.BenchmarkFixtures;
+import com.smartpark.parking_backend.websocket.SlotWebSocketPublisher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one MQTT message into a slot update, per payload mix.
+ * {@code parseBuffer} is the parser alone on the buffer the MQTT client hands
+ * us, {@code parseString} adds the UTF-8 round trip of the legacy String path,
+ * and {@code processMessage} is the full single-message path including the
+ * store update and the delta broadcast.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SensorPayloadBenchmark {
+
+    private static final int PAYLOADS = 1024; // power of two, see next()
+    private static final int SENSORS = 1000;
+
+    @Param({"clean", "spot-forms", "status-forms", "malformed", "mixed"})
+    public String mix;
+
+    private String[] topics;
+    private String[] payloads;
+    private ByteBuffer[] buffers;
+    private int cursor;
+
+    private MqttMessageListener listener;
+    private SlotWebSocketPublisher publisher;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SensorPayloads generated = SensorPayloads.of(mix, PAYLOADS, SENSORS);
+        topics = generated.topics;
+        payloads = generated.payloads;
+        buffers = new ByteBuffer[PAYLOADS];
+        for (int i = 0; i < PAYLOADS; i++) {
+            buffers[i] = ByteBuffer.wrap(payloads[i].getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        }
+
+        ParkingLot lot = BenchmarkFixtures.lot(1L);
+        publisher = BenchmarkFixtures.publisher();
+        listener = new MqttMessageListener(BenchmarkFixtures.parkingService(
+            BenchmarkFixtures.slotRepository(BenchmarkFixtures.slots(lot, SENSORS)),
+            BenchmarkFixtures.lotRepository(List.of(lot)),
+            publisher));
+        stdout = BenchmarkFixtures.silenceStdout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+        publisher.shutdown();
+    }
+
+    private int next() {
+        return cursor++ & (PAYLOADS - 1);
+    }
+
+    @Benchmark
+    public SensorEvent parseBuffer() {
+        int i = next();
+        return SensorPayloadParser.parse(topics[i], buffers[i]);
+    }
+
+    @Benchmark
+    public SensorEvent parseString() {
+        int i = next();
+        return listener.parseEvent(topics[i], payloads[i]);
+    }
+
+    @Benchmark
+    public void processMessage() {
+        int i = next();
+        listener.processMessage(topics[i], payloads[i]);
+    }
+}
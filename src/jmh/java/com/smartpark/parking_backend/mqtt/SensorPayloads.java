@@ -0,0 +1,75 @@
+package com.smartpark.parking_backend.mqtt;
+
+import java.util.Random;
+
+/**
+ * Generates topic/payload pairs shaped like what the sensors actually send.
+ * Sensor ids stay inside {@code 1..sensorCount} so that parsed events hit
+ * real slots in the benchmark fixtures.
+ */
+final class SensorPayloads {
+
+    final String[] topics;
+    final String[] payloads;
+
+    private SensorPayloads(int size) {
+        topics = new String[size];
+        payloads = new String[size];
+    }
+
+    /**
+     * @param mix one of {@code clean}, {@code spot-forms}, {@code status-forms},
+     *            {@code malformed} or {@code mixed} (70% clean, 10% of each other kind)
+     */
+    static SensorPayloads of(String mix, int size, int sensorCount) {
+        SensorPayloads result = new SensorPayloads(size);
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            int sensor = 1 + random.nextInt(sensorCount);
+            boolean status = random.nextBoolean();
+            String kind = mix;
+            if ("mixed".equals(mix)) {
+                int roll = random.nextInt(10);
+                kind = roll < 7 ? "clean" : roll == 7 ? "spot-forms" : roll == 8 ? "status-forms" : "malformed";
+            }
+            result.topics[i] = "parking/cps2/sensor-" + sensor;
+            result.payloads[i] = switch (kind) {
+                case "clean" -> "{\"sensorId\":\"sensor-" + sensor + "\",\"spot\":" + sensor + ",\"status\":" + status + "}";
+                case "spot-forms" -> spotForm(random, sensor, status);
+                case "status-forms" -> statusForm(random, sensor, status);
+                case "malformed" -> malformed(random, sensor);
+                default -> throw new IllegalArgumentException("Unknown payload mix: " + mix);
+            };
+        }
+        return result;
+    }
+
+    private static String spotForm(Random random, int sensor, boolean status) {
+        String spot = switch (random.nextInt(3)) {
+            case 0 -> "\"spot" + sensor + "\"";
+            case 1 -> "\"spot-" + sensor + "\"";
+            default -> "\" " + sensor + " \"";
+        };
+        // no sensorId: the listener falls back to the topic suffix
+        return "{\"spot\":" + spot + ",\"status\":" + status + "}";
+    }
+
+    private static String statusForm(Random random, int sensor, boolean status) {
+        String value = switch (random.nextInt(4)) {
+            case 0 -> status ? "\"1\"" : "\"0\"";
+            case 1 -> status ? "\"TRUE\"" : "\"false\"";
+            case 2 -> status ? "1" : "0";
+            default -> String.valueOf(status);
+        };
+        return "{\"sensorId\":\"sensor-" + sensor + "\",\"spot\":" + sensor + ",\"battery\":3.7,\"status\":" + value + "}";
+    }
+
+    private static String malformed(Random random, int sensor) {
+        return switch (random.nextInt(4)) {
+            case 0 -> "not json at all";
+            case 1 -> "{\"spot\":" + sensor + ",\"status\":true";
+            case 2 -> "{\"sensorId\":\"sensor-" + sensor + "\",\"status\":true}";
+            default -> "";
+        };
+    }
+}
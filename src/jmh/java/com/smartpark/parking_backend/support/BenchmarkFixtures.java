@@ -0,0 +1,255 @@
+package com.smartpark.parking_backend.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartpark.parking_backend.bus.InProcessSlotUpdateBus;
+import com.smartpark.parking_backend.codec.CborSlotCodec;
+import com.smartpark.parking_backend.codec.JsonSlotCodec;
+import com.smartpark.parking_backend.codec.SlotCodecs;
+import com.smartpark.parking_backend.config.IngestProperties;
+import com.smartpark.parking_backend.config.WebSocketProperties;
+import com.smartpark.parking_backend.config.WriteBehindProperties;
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import com.smartpark.parking_backend.repository.ParkingSlotRepository;
+import com.smartpark.parking_backend.service.LotSpatialIndex;
+import com.smartpark.parking_backend.service.OccupancyStore;
+import com.smartpark.parking_backend.service.OccupancyWriteBehind;
+import com.smartpark.parking_backend.service.ParkingService;
+import com.smartpark.parking_backend.websocket.SlotWebSocketPublisher;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the services used by the benchmarks without Spring or a database.
+ * Repositories are in-memory proxies that answer the handful of methods the
+ * code under test calls and throw for anything else, so a benchmark that
+ * suddenly hits an unexpected query fails loudly instead of measuring it.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static ParkingLot lot(long id) {
+        ParkingLot lot = new ParkingLot();
+        setId(lot, id);
+        lot.setName("Bench Lot " + id);
+        lot.setLatitude(45.45);
+        lot.setLongitude(4.38);
+        return lot;
+    }
+
+    /**
+     * Slots {@code 1..count} in the given lot, slot {@code i} bound to {@code sensor-i}.
+     */
+    public static List<ParkingSlot> slots(ParkingLot lot, int count) {
+        List<ParkingSlot> slots = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ParkingSlot slot = new ParkingSlot();
+            setId(slot, i);
+            slot.setSlotNumber(i);
+            slot.setSensorId("sensor-" + i);
+            slot.setParkingLot(lot);
+            slots.add(slot);
+        }
+        return slots;
+    }
+
+    public static InMemorySlots slotRepository(List<ParkingSlot> slots) {
+        return new InMemorySlots(slots);
+    }
+
+    public static ParkingLotRepository lotRepository(List<ParkingLot> lots) {
+        return (ParkingLotRepository) Proxy.newProxyInstance(
+            ParkingLotRepository.class.getClassLoader(),
+            new Class<?>[] { ParkingLotRepository.class },
+            (proxy, method, args) -> switch (method.getName()) {
+                case "findAll" -> new ArrayList<>(lots);
+                case "findAllIds" -> lots.stream().map(ParkingLot::getId).toList();
+                case "findById" -> lots.stream().filter(lot -> lot.getId().equals(args[0])).findFirst();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                case "toString" -> "InMemoryParkingLotRepository";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /**
+     * A {@link ParkingService} wired to in-memory repositories, a loaded
+     * occupancy store, a synchronous write-behind and an in-process bus.
+     */
+    public static ParkingService parkingService(InMemorySlots slots, ParkingLotRepository lots,
+                                                SlotWebSocketPublisher publisher) {
+        OccupancyStore store = new OccupancyStore(slots.repository(), lots);
+        store.reload();
+        OccupancyWriteBehind writeBehind = new OccupancyWriteBehind(slots.repository(), store, writeBehindDisabled());
+        writeBehind.start();
+        ParkingService service = new ParkingService(slots.repository(), lots, publisher, store, writeBehind,
+            new LotSpatialIndex(lots), new InProcessSlotUpdateBus());
+        service.subscribeToSlotChanges();
+        return service;
+    }
+
+    public static SlotWebSocketPublisher publisher() {
+        return publisher(Integer.MAX_VALUE, 60_000, "snapshot", 0);
+    }
+
+    /**
+     * A publisher with the given outbox limits and broadcast tick (0 sends
+     * every change at once). Its resync snapshots come from an empty store.
+     */
+    public static SlotWebSocketPublisher publisher(int bufferSizeLimit, long sendTimeLimitMs, String overflow,
+                                                   long tickMs) {
+        WebSocketProperties properties = new WebSocketProperties() {
+            @Override
+            public int getSenderThreads() {
+                return 4;
+            }
+
+            @Override
+            public int getBufferSizeLimit() {
+                return bufferSizeLimit;
+            }
+
+            @Override
+            public long getSendTimeLimitMs() {
+                return sendTimeLimitMs;
+            }
+
+            @Override
+            public String getOverflow() {
+                return overflow;
+            }
+
+            @Override
+            public long getBroadcastTickMs() {
+                return tickMs;
+            }
+
+            @Override
+            public int getResumeBufferSize() {
+                return 4096;
+            }
+        };
+        OccupancyStore store = new OccupancyStore(slotRepository(List.of()).repository(), lotRepository(List.of()));
+        SlotCodecs codecs = new SlotCodecs(List.of(new JsonSlotCodec(new ObjectMapper()), new CborSlotCodec()));
+        return new SlotWebSocketPublisher(codecs, properties, store);
+    }
+
+    public static WriteBehindProperties writeBehindDisabled() {
+        return new WriteBehindProperties() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public int getBatchSize() {
+                return 500;
+            }
+        };
+    }
+
+    public static IngestProperties ingestProperties(int maxBatchSize) {
+        return new IngestProperties() {
+            @Override
+            public boolean isBatchEnabled() {
+                return true;
+            }
+
+            @Override
+            public int getQueueCapacity() {
+                return 10_000;
+            }
+
+            @Override
+            public int getWorkers() {
+                return 1;
+            }
+
+            @Override
+            public long getBatchWindowMs() {
+                return 50;
+            }
+
+            @Override
+            public int getMaxBatchSize() {
+                return maxBatchSize;
+            }
+        };
+    }
+
+    /**
+     * Replaces {@code System.out} with a sink, returning the original so it
+     * can be restored. The listener still prints per message; the cost of
+     * building those strings stays in the measurement.
+     */
+    public static PrintStream silenceStdout() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return original;
+    }
+
+    private static void setId(Object entity, long id) {
+        try {
+            Field field = entity.getClass().getDeclaredField("id");
+            field.setAccessible(true);
+            field.set(entity, id);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * In-memory slot table. Counts the occupancy writes it receives so a
+     * benchmark can sanity-check that work actually happened.
+     */
+    public static final class InMemorySlots {
+        private final Map<Long, ParkingSlot> slotsById = new LinkedHashMap<>();
+        private final AtomicLong occupancyWrites = new AtomicLong();
+        private final ParkingSlotRepository repository;
+
+        InMemorySlots(List<ParkingSlot> slots) {
+            for (ParkingSlot slot : slots) {
+                slotsById.put(slot.getId(), slot);
+            }
+            repository = (ParkingSlotRepository) Proxy.newProxyInstance(
+                ParkingSlotRepository.class.getClassLoader(),
+                new Class<?>[] { ParkingSlotRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> new ArrayList<>(slotsById.values());
+                    case "findById" -> Optional.ofNullable(slotsById.get((Long) args[0]));
+                    case "findAllBySensorId" -> slotsById.values().stream()
+                        .filter(slot -> args[0].equals(slot.getSensorId())).toList();
+                    case "updateOccupancy" -> {
+                        occupancyWrites.addAndGet(((Collection<?>) args[0]).size());
+                        yield ((Collection<?>) args[0]).size();
+                    }
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryParkingSlotRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        }
+
+        public ParkingSlotRepository repository() {
+            return repository;
+        }
+
+        public long occupancyWrites() {
+            return occupancyWrites.get();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.smartpark.parking_backend.support;
+
+import com.smartpark.parking_backend.websocket.SlotWebSocketPublisher;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link WebSocketSession} stand-ins for fan-out benchmarks. They never touch
+ * the network; how a send behaves is decided by {@link Behaviour}.
+ */
+public final class StubSessions {
+
+    public enum Behaviour {
+        /** Accepts every frame immediately. */
+        FAST,
+        /** Blocks for {@link #SLOW_SEND_NANOS} on every frame, like a client with a full TCP window. */
+        SLOW,
+        /**
+         * Blocks on send until the session is closed, like a client that stopped
+         * reading. Only the server closing it frees the sender thread.
+         */
+        STALLED,
+        /** Throws {@link IOException} on send, like a peer that went away without a close frame. */
+        FAILING
+    }
+
+    public static final long SLOW_SEND_NANOS = 200_000;
+    // upper bound for a stalled send, so a publisher that never evicts fails the run instead of hanging it
+    private static final long STALL_LIMIT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private static final AtomicLong framesSent = new AtomicLong();
+    private static final AtomicLong sendAttempts = new AtomicLong();
+
+    private StubSessions() {
+    }
+
+    public static WebSocketSession create(String id, Behaviour behaviour) {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        return (WebSocketSession) Proxy.newProxyInstance(
+            WebSocketSession.class.getClassLoader(),
+            new Class<?>[] { WebSocketSession.class },
+            (proxy, method, args) -> switch (method.getName()) {
+                case "getId" -> id;
+                case "isOpen" -> closed.getCount() > 0;
+                case "getAttributes" -> attributes;
+                case "sendMessage" -> {
+                    send(behaviour, closed, (WebSocketMessage<?>) args[0]);
+                    yield null;
+                }
+                case "close" -> {
+                    closed.countDown();
+                    yield null;
+                }
+                case "setTextMessageSizeLimit", "setBinaryMessageSizeLimit" -> null;
+                case "getTextMessageSizeLimit", "getBinaryMessageSizeLimit" -> Integer.MAX_VALUE;
+                case "hashCode" -> id.hashCode();
+                case "equals" -> proxy == args[0];
+                case "toString" -> "StubSession[" + id + ", " + behaviour + "]";
+                default -> null;
+            });
+    }
+
+    /**
+     * Registers {@code count} sessions with the given behaviour and returns them.
+     */
+    public static List<WebSocketSession> register(SlotWebSocketPublisher publisher, int count, Behaviour behaviour) {
+        List<WebSocketSession> sessions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            WebSocketSession session = create(behaviour.name().toLowerCase() + "-" + i, behaviour);
+            publisher.register(session);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    public static long framesSent() {
+        return framesSent.get();
+    }
+
+    /**
+     * Every {@code sendMessage} call so far, including the ones that threw.
+     */
+    public static long sendAttempts() {
+        return sendAttempts.get();
+    }
+
+    /**
+     * Waits until {@link #sendAttempts()} reaches {@code target}. Used to time a
+     * broadcast until the sender thread has actually reached every session.
+     */
+    public static void awaitSendAttempts(long target, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (sendAttempts.get() < target) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Fan-out did not finish: " + sendAttempts.get() + " of " + target);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Waits until every given session has been closed by the server.
+     */
+    public static void awaitClosed(Collection<WebSocketSession> sessions, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (WebSocketSession session : sessions) {
+            while (session.isOpen()) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Session was never closed: " + session.getId());
+                }
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void send(Behaviour behaviour, CountDownLatch closed, WebSocketMessage<?> message)
+        throws IOException, InterruptedException {
+        sendAttempts.incrementAndGet();
+        switch (behaviour) {
+            case FAST -> framesSent.incrementAndGet();
+            case SLOW -> {
+                LockSupport.parkNanos(SLOW_SEND_NANOS);
+                framesSent.incrementAndGet();
+            }
+            case STALLED -> {
+                closed.await(STALL_LIMIT_NANOS, TimeUnit.NANOSECONDS);
+                throw new IOException("Socket closed");
+            }
+            case FAILING -> throw new IOException("Broken pipe");
+        }
+    }
+}
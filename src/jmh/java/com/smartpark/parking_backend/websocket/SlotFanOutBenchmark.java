@@ -0,0 +1,110 @@
+package com.smartpark.parking_backend.websocket;
+
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.support.BenchmarkFixtures;
+import com.smartpark.parking_backend.support.StubSessions;
+import com.smartpark.parking_backend.support.StubSessions.Behaviour;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SlotWebSocketPublisher#broadcastChanges} to many sessions, timed until
+ * the sender threads have called {@code sendMessage} on every one of them, not
+ * just until the caller returns. This is the path every slot change takes, so
+ * it covers the outboxes, per-lot routing, codecs and, with {@code tickMs}
+ * above 0, the wait for the next tick. SampleTime mode reports the p99/p99.9
+ * that clients feel during peak hours.
+ *
+ * <p>The {@code mix} parameter puts 1% slow, stalled or failing sessions among
+ * fast ones. Stalled sessions block until the publisher closes them after
+ * {@link #SEND_TIME_LIMIT_MS}, so that mix shows how long stuck clients can
+ * hold up everyone else. The publisher drops stalled and failing sessions,
+ * so they are registered again before each invocation to keep the rate
+ * constant.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SlotFanOutBenchmark {
+
+    static final long SEND_TIME_LIMIT_MS = 100;
+    private static final long FAN_OUT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    @Param({"100", "1000", "10000"})
+    public int sessionCount;
+
+    @Param({"1", "100", "10000"})
+    public int changedSlots;
+
+    @Param({"fast", "slow-1pct", "stalled-1pct", "failing-1pct"})
+    public String mix;
+
+    @Param({"0", "100"})
+    public long tickMs;
+
+    private SlotWebSocketPublisher publisher;
+    private List<ParkingSlot> slots;
+    private int special;
+    private List<WebSocketSession> failing = List.of();
+    private List<WebSocketSession> stalled = List.of();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        publisher = BenchmarkFixtures.publisher(Integer.MAX_VALUE, SEND_TIME_LIMIT_MS, "snapshot", tickMs);
+        slots = BenchmarkFixtures.slots(BenchmarkFixtures.lot(1L), changedSlots);
+
+        special = "fast".equals(mix) ? 0 : Math.max(1, sessionCount / 100);
+        StubSessions.register(publisher, sessionCount - special, Behaviour.FAST);
+        if ("slow-1pct".equals(mix)) {
+            StubSessions.register(publisher, special, Behaviour.SLOW);
+        } else if ("failing-1pct".equals(mix)) {
+            failing = new ArrayList<>(special);
+            for (int i = 0; i < special; i++) {
+                failing.add(StubSessions.create("failing-" + i, Behaviour.FAILING));
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void registerDroppedSessions() {
+        for (WebSocketSession session : failing) {
+            publisher.register(session);
+        }
+        if ("stalled-1pct".equals(mix)) {
+            // the previous ones must have released their sender threads first
+            StubSessions.awaitClosed(stalled, FAN_OUT_TIMEOUT_NANOS);
+            stalled = StubSessions.register(publisher, special, Behaviour.STALLED);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Benchmark
+    public void broadcastChanges() {
+        long target = StubSessions.sendAttempts() + sessionCount;
+        publisher.broadcastChanges(slots, List.of());
+        StubSessions.awaitSendAttempts(target, FAN_OUT_TIMEOUT_NANOS);
+    }
+}
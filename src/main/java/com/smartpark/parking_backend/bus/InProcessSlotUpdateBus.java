@@ -0,0 +1,56 @@
+package com.smartpark.parking_backend.bus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bus that never leaves the JVM: changes go straight to the subscribers of
+ * other instance ids on the calling thread. It is the default for a single
+ * instance, and lets tests wire several services to one bus.
+ */
+@Component
+@ConditionalOnProperty(name = "slots.bus.type", havingValue = "in-process", matchIfMissing = true)
+public class InProcessSlotUpdateBus implements SlotUpdateBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(InProcessSlotUpdateBus.class);
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(SlotChange change) {
+        List<Consumer<SlotChange>> others = new ArrayList<>(subscribers.size());
+        for (Subscriber subscriber : subscribers) {
+            // the same rule as MQTT no-local: a publisher does not hear itself
+            if (!subscriber.instanceId().equals(change.origin())) {
+                others.add(subscriber.consumer());
+            }
+        }
+        deliver(others, change);
+    }
+
+    @Override
+    public void subscribe(String instanceId, Consumer<SlotChange> subscriber) {
+        subscribers.add(new Subscriber(instanceId, subscriber));
+    }
+
+    // one failing subscriber must not keep the change from the others
+    static void deliver(List<Consumer<SlotChange>> subscribers, SlotChange change) {
+        for (Consumer<SlotChange> subscriber : subscribers) {
+            try {
+                subscriber.accept(change);
+            } catch (RuntimeException e) {
+                logger.error("Slot change subscriber failed", e);
+            }
+        }
+    }
+
+    private record Subscriber(String instanceId, Consumer<SlotChange> consumer) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.smartpark.parking_backend.bus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartpark.parking_backend.config.SlotBusProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Bus carried over the MQTT connection the sensors already use. Changes are
+ * published as JSON to {@code slots.bus.topic}; each instance subscribes to
+ * that topic outside any shared group and with the MQTT 5 no-local option, so
+ * it sees every change except its own, which the broker does not send back.
+ * One connection is one instance, so the instance id is not checked here.
+ *
+ * <p>{@code MqttService} owns the connection: it hands this bus a sender once
+ * connected and routes messages from the topic to {@link #receive}. Until
+ * then published changes are dropped.
+ *
+ * <p>Subscribers may hit the database, so received changes are handed to
+ * them on a thread of their own, one at a time and in arrival order, never
+ * on the MQTT listener thread.
+ */
+@Component
+@ConditionalOnProperty(name = "slots.bus.type", havingValue = "mqtt")
+public class MqttSlotUpdateBus implements SlotUpdateBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttSlotUpdateBus.class);
+
+    private final SlotBusProperties slotBusProperties;
+    private final ObjectMapper objectMapper;
+    private final List<Consumer<SlotChange>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService applyExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slot-bus-apply");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Consumer<byte[]> sender;
+
+    public MqttSlotUpdateBus(SlotBusProperties slotBusProperties, ObjectMapper objectMapper) {
+        this.slotBusProperties = slotBusProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        applyExecutor.shutdown();
+    }
+
+    public String topic() {
+        return slotBusProperties.getTopic();
+    }
+
+    public void connect(Consumer<byte[]> sender) {
+        this.sender = sender;
+    }
+
+    @Override
+    public void publish(SlotChange change) {
+        Consumer<byte[]> current = sender;
+        if (current == null) {
+            logger.debug("MQTT not connected, slot change stays on this instance");
+            return;
+        }
+        try {
+            current.accept(objectMapper.writeValueAsBytes(change));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to publish slot change: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(String instanceId, Consumer<SlotChange> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Handles a message from the bus topic: queues it for the subscribers and
+     * runs {@code onApplied} once they are done with it, or right away when it
+     * cannot be read. The MQTT client passes the acknowledgement here, so
+     * {@code mqtt.receive-maximum} also bounds the changes waiting to be applied.
+     */
+    public void receive(ByteBuffer payload, Runnable onApplied) {
+        SlotChange change = payload == null ? null : read(payload);
+        if (change == null) {
+            onApplied.run();
+            return;
+        }
+        try {
+            applyExecutor.execute(() -> {
+                try {
+                    InProcessSlotUpdateBus.deliver(subscribers, change);
+                } finally {
+                    onApplied.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Dropping slot change during shutdown");
+            onApplied.run();
+        }
+    }
+
+    private SlotChange read(ByteBuffer payload) {
+        try {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            return objectMapper.readValue(bytes, SlotChange.class);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable slot change: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.smartpark.parking_backend.bus;
+
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.model.ParkingSlot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * One batch of slot changes as it travels over a {@link SlotUpdateBus}. Slots
+ * are carried as plain values so the change can leave the JVM; {@code origin}
+ * names the instance that made it. Each upsert carries the occupancy version
+ * it was published with, so receivers keep the newest one. Lots that were
+ * created, moved or deleted travel along in {@code lots} and {@code removedLots}.
+ */
+public record SlotChange(String origin, List<SlotState> upserts, List<SlotState> removed,
+                         List<LotState> lots, List<Long> removedLots) {
+
+    public SlotChange {
+        // absent in changes that only touch slots
+        upserts = upserts == null ? List.of() : upserts;
+        removed = removed == null ? List.of() : removed;
+        lots = lots == null ? List.of() : lots;
+        removedLots = removedLots == null ? List.of() : removedLots;
+    }
+
+    public record SlotState(Long id, Long lotId, Integer number, String sensorId, boolean occupied, long version) {
+
+        public static SlotState of(ParkingSlot slot, long version) {
+            Long lotId = slot.getParkingLot() == null ? null : slot.getParkingLot().getId();
+            return new SlotState(slot.getId(), lotId, slot.getSlotNumber(), slot.getSensorId(), slot.getOccupied(),
+                version);
+        }
+
+        /**
+         * Whether {@code slot} is this slot with the same lot, number and
+         * sensor, so only its occupancy can differ.
+         */
+        public boolean sameSlot(ParkingSlot slot) {
+            Long slotLotId = slot.getParkingLot() == null ? null : slot.getParkingLot().getId();
+            return Objects.equals(id, slot.getId())
+                && Objects.equals(lotId, slotLotId)
+                && Objects.equals(number, slot.getSlotNumber())
+                && Objects.equals(sensorId, slot.getSensorId());
+        }
+    }
+
+    public record LotState(Long id, String name, String address, Double latitude, Double longitude) {
+
+        public static LotState of(ParkingLot lot) {
+            return new LotState(lot.getId(), lot.getName(), lot.getAddress(), lot.getLatitude(), lot.getLongitude());
+        }
+    }
+
+    public static SlotChange of(String origin, Collection<ParkingSlot> upserts, Collection<ParkingSlot> removed,
+                                ToLongFunction<ParkingSlot> versions) {
+        return of(origin, upserts, removed, List.of(), List.of(), versions);
+    }
+
+    /**
+     * Builds a change, asking {@code versions} for each upsert's version. The
+     * occupancy is read after that, so it is never older than its version.
+     */
+    public static SlotChange of(String origin, Collection<ParkingSlot> upserts, Collection<ParkingSlot> removed,
+                                Collection<ParkingLot> lots, Collection<Long> removedLots,
+                                ToLongFunction<ParkingSlot> versions) {
+        List<SlotState> upsertStates = new ArrayList<>(upserts.size());
+        for (ParkingSlot slot : upserts) {
+            long version = versions.applyAsLong(slot);
+            upsertStates.add(SlotState.of(slot, version));
+        }
+        List<SlotState> removedStates = new ArrayList<>(removed.size());
+        for (ParkingSlot slot : removed) {
+            removedStates.add(SlotState.of(slot, 0));
+        }
+        List<LotState> lotStates = new ArrayList<>(lots.size());
+        for (ParkingLot lot : lots) {
+            lotStates.add(LotState.of(lot));
+        }
+        return new SlotChange(origin, upsertStates, removedStates, lotStates, List.copyOf(removedLots));
+    }
+}
@@ -0,0 +1,19 @@
+package com.smartpark.parking_backend.bus;
+
+import java.util.function.Consumer;
+
+/**
+ * Publish/subscribe channel for slot changes between backend instances. Each
+ * instance publishes the changes it makes, tagged with its instance id as the
+ * origin; subscribers get the changes of every other instance, never their own.
+ */
+public interface SlotUpdateBus {
+
+    void publish(SlotChange change);
+
+    /**
+     * Subscribes on behalf of the instance {@code instanceId}, which is not
+     * handed the changes it published itself.
+     */
+    void subscribe(String instanceId, Consumer<SlotChange> subscriber);
+}
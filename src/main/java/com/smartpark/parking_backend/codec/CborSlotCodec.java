@@ -0,0 +1,52 @@
+package com.smartpark.parking_backend.codec;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.smartpark.parking_backend.dto.SlotView;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * CBOR encoding. Slots are written as arrays {@code [id, lotId, number, occupied]}
+ * instead of maps, so a slot costs a few bytes instead of repeating its field
+ * names; everything else keeps the JSON structure.
+ */
+@Component
+public class CborSlotCodec implements SlotCodec {
+
+    public static final String SUBPROTOCOL = "slots.cbor";
+    public static final MediaType APPLICATION_CBOR = MediaType.parseMediaType("application/cbor");
+
+    private final ObjectMapper cborMapper = CBORMapper.builder()
+        .addMixIn(SlotView.class, SlotViewAsArray.class)
+        .build();
+
+    @Override
+    public String subprotocol() {
+        return SUBPROTOCOL;
+    }
+
+    @Override
+    public MediaType mediaType() {
+        return APPLICATION_CBOR;
+    }
+
+    @Override
+    public boolean binary() {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return cborMapper.writeValueAsBytes(value);
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"id", "lotId", "number", "occupied"})
+    private interface SlotViewAsArray {
+    }
+}
@@ -0,0 +1,42 @@
+package com.smartpark.parking_backend.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * The default encoding: the same JSON the REST API has always returned.
+ */
+@Component
+public class JsonSlotCodec implements SlotCodec {
+
+    public static final String SUBPROTOCOL = "slots.json";
+
+    private final ObjectMapper objectMapper;
+
+    public JsonSlotCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String subprotocol() {
+        return SUBPROTOCOL;
+    }
+
+    @Override
+    public MediaType mediaType() {
+        return MediaType.APPLICATION_JSON;
+    }
+
+    @Override
+    public boolean binary() {
+        return false;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        return objectMapper.writeValueAsBytes(value);
+    }
+}
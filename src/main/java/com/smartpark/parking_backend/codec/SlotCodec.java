@@ -0,0 +1,28 @@
+package com.smartpark.parking_backend.codec;
+
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+
+/**
+ * Wire encoding for slot state, shared by {@code GET /api/parking/slots} and
+ * the {@code /ws/slots} stream. Clients pick one with the {@code Accept}
+ * header or the WebSocket subprotocol. Register another implementation as a
+ * bean to add an encoding.
+ */
+public interface SlotCodec {
+
+    /**
+     * WebSocket subprotocol that selects this codec.
+     */
+    String subprotocol();
+
+    MediaType mediaType();
+
+    /**
+     * Whether WebSocket frames are sent as binary rather than text messages.
+     */
+    boolean binary();
+
+    byte[] encode(Object value) throws IOException;
+}
@@ -0,0 +1,82 @@
+package com.smartpark.parking_backend.codec;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The available {@link SlotCodec}s. JSON is the default whenever a client
+ * does not ask for anything else.
+ */
+@Component
+public class SlotCodecs {
+
+    private final List<SlotCodec> codecs;
+    private final SlotCodec defaultCodec;
+
+    public SlotCodecs(List<SlotCodec> codecs) {
+        if (codecs.isEmpty()) {
+            throw new IllegalArgumentException("At least one slot codec is required");
+        }
+        this.codecs = List.copyOf(codecs);
+        this.defaultCodec = codecs.stream()
+            .filter(codec -> JsonSlotCodec.SUBPROTOCOL.equals(codec.subprotocol()))
+            .findFirst()
+            .orElse(codecs.get(0));
+    }
+
+    public SlotCodec defaultCodec() {
+        return defaultCodec;
+    }
+
+    public List<String> subprotocols() {
+        return codecs.stream().map(SlotCodec::subprotocol).toList();
+    }
+
+    /**
+     * Returns the codec of a negotiated WebSocket subprotocol, or the default.
+     */
+    public SlotCodec forSubprotocol(String subprotocol) {
+        if (subprotocol == null || subprotocol.isEmpty()) {
+            return defaultCodec;
+        }
+        for (SlotCodec codec : codecs) {
+            if (codec.subprotocol().equalsIgnoreCase(subprotocol)) {
+                return codec;
+            }
+        }
+        return defaultCodec;
+    }
+
+    /**
+     * Returns the first codec the {@code Accept} header names explicitly, or
+     * {@code null} when it only accepts JSON or wildcards.
+     */
+    public SlotCodec forAccept(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+                continue;
+            }
+            for (SlotCodec codec : codecs) {
+                if (codec.mediaType().isCompatibleWith(mediaType)) {
+                    return codec == defaultCodec ? null : codec;
+                }
+            }
+        }
+        return null;
+    }
+}
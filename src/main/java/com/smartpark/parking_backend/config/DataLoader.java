@@ -5,6 +5,8 @@ import com.smartpark.parking_backend.model.ParkingLot;
 import com.smartpark.parking_backend.model.ParkingSlot;
 import com.smartpark.parking_backend.repository.AdminRepository;
 import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import com.smartpark.parking_backend.service.LotSpatialIndex;
+import com.smartpark.parking_backend.service.OccupancyStore;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
@@ -15,10 +17,15 @@ public class DataLoader implements CommandLineRunner {
 
     private final ParkingLotRepository parkingLotRepository;
     private final AdminRepository adminRepository;
+    private final OccupancyStore occupancyStore;
+    private final LotSpatialIndex lotSpatialIndex;
 
-    public DataLoader(ParkingLotRepository parkingLotRepository, AdminRepository adminRepository) {
+    public DataLoader(ParkingLotRepository parkingLotRepository, AdminRepository adminRepository,
+                      OccupancyStore occupancyStore, LotSpatialIndex lotSpatialIndex) {
         this.parkingLotRepository = parkingLotRepository;
         this.adminRepository = adminRepository;
+        this.occupancyStore = occupancyStore;
+        this.lotSpatialIndex = lotSpatialIndex;
     }
 
     @Override
@@ -55,6 +62,8 @@ public class DataLoader implements CommandLineRunner {
             lot.setParkingSpots(List.of(s1, s2, s3));
             
             parkingLotRepository.save(lot);
+            occupancyStore.reload();
+            lotSpatialIndex.reload();
             seeded = true;
         }
 
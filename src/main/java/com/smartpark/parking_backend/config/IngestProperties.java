@@ -0,0 +1,57 @@
+package com.smartpark.parking_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class IngestProperties {
+
+    @Value("${mqtt.ingest.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${mqtt.ingest.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${mqtt.ingest.workers:0}")
+    private int workers;
+
+    @Value("${mqtt.ingest.batch-window-ms:50}")
+    private long batchWindowMs;
+
+    @Value("${mqtt.ingest.max-batch-size:500}")
+    private int maxBatchSize;
+
+    @Value("${mqtt.ingest.debounce.stable-ms:0}")
+    private long debounceStableMs;
+
+    @Value("${mqtt.ingest.debounce.readings:0}")
+    private int debounceReadings;
+
+    public boolean isBatchEnabled() {
+        return batchEnabled;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getBatchWindowMs() {
+        return batchWindowMs;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getDebounceStableMs() {
+        return debounceStableMs;
+    }
+
+    public int getDebounceReadings() {
+        return debounceReadings;
+    }
+}
@@ -21,6 +21,15 @@ public class MqttProperties {
     @Value("${mqtt.topic.subscribe:parking/sensors/#}")
     private String topicSubscribe;
 
+    @Value("${mqtt.shared-group:}")
+    private String sharedGroup;
+
+    @Value("${mqtt.qos:1}")
+    private int qos;
+
+    @Value("${mqtt.receive-maximum:100}")
+    private int receiveMaximum;
+
     @Value("${mqtt.enabled:true}")
     private boolean enabled;
 
@@ -44,6 +53,18 @@ public class MqttProperties {
         return topicSubscribe;
     }
 
+    public String getSharedGroup() {
+        return sharedGroup;
+    }
+
+    public int getQos() {
+        return qos;
+    }
+
+    public int getReceiveMaximum() {
+        return receiveMaximum;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -0,0 +1,17 @@
+package com.smartpark.parking_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SlotBusProperties {
+
+    // slots.bus.type (in-process or mqtt) picks the bus bean itself
+
+    @Value("${slots.bus.topic:smartpark/slot-changes}")
+    private String topic;
+
+    public String getTopic() {
+        return topic;
+    }
+}
@@ -0,0 +1,57 @@
+package com.smartpark.parking_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class WebSocketProperties {
+
+    @Value("${websocket.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${websocket.outbox.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    @Value("${websocket.outbox.send-time-limit-ms:5000}")
+    private long sendTimeLimitMs;
+
+    @Value("${websocket.outbox.overflow:snapshot}")
+    private String overflow;
+
+    @Value("${websocket.broadcast.tick-ms:0}")
+    private long broadcastTickMs;
+
+    @Value("${websocket.permessage-deflate:true}")
+    private boolean permessageDeflate;
+
+    @Value("${websocket.resume.buffer-size:4096}")
+    private int resumeBufferSize;
+
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+
+    public int getBufferSizeLimit() {
+        return bufferSizeLimit;
+    }
+
+    public long getSendTimeLimitMs() {
+        return sendTimeLimitMs;
+    }
+
+    public String getOverflow() {
+        return overflow;
+    }
+
+    public long getBroadcastTickMs() {
+        return broadcastTickMs;
+    }
+
+    public boolean isPermessageDeflate() {
+        return permessageDeflate;
+    }
+
+    public int getResumeBufferSize() {
+        return resumeBufferSize;
+    }
+}
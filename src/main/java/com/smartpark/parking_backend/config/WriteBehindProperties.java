@@ -0,0 +1,29 @@
+package com.smartpark.parking_backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class WriteBehindProperties {
+
+    @Value("${occupancy.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${occupancy.write-behind.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${occupancy.write-behind.batch-size:500}")
+    private int batchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
@@ -1,11 +1,21 @@
 package com.smartpark.parking_backend.controller;
 
+import com.smartpark.parking_backend.codec.SlotCodec;
+import com.smartpark.parking_backend.codec.SlotCodecs;
+import com.smartpark.parking_backend.dto.LotAvailability;
+import com.smartpark.parking_backend.dto.LotView;
+import com.smartpark.parking_backend.dto.NearbyLot;
+import com.smartpark.parking_backend.dto.SlotPage;
+import com.smartpark.parking_backend.dto.SlotView;
 import com.smartpark.parking_backend.model.ParkingLot;
 import com.smartpark.parking_backend.model.ParkingSlot;
 import com.smartpark.parking_backend.service.ParkingService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
 
 
@@ -13,38 +23,119 @@ import java.util.List;
 
 @RestController
 @RequestMapping("/api/parking")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {ParkingController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 public class ParkingController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 500;
+
     private final ParkingService parkingService;
+    private final SlotCodecs slotCodecs;
 
-    public ParkingController(ParkingService parkingService){
+    public ParkingController(ParkingService parkingService, SlotCodecs slotCodecs){
         this.parkingService = parkingService;
+        this.slotCodecs = slotCodecs;
     }
 
     //All get Requests
+    // Each one answers If-None-Match with 304 before reading any data; see etag()
 
+    // Without parameters this is every slot. Any filter, after or limit switches to
+    // keyset pages; the cursor for the next page is in the X-Next-Cursor header.
+    // JSON by default; any other codec when the Accept header names it, e.g. application/cbor
     @GetMapping("/slots")
-    public List<ParkingSlot> getAllSlots() {
-        return parkingService.getAllSlots();
+    public ResponseEntity<?> getAllSlots(
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+        @RequestParam(required = false) Long lotId,
+        @RequestParam(required = false) Boolean occupied,
+        @RequestParam(required = false) String sensorId,
+        @RequestParam(required = false) Long after,
+        @RequestParam(required = false) Integer limit,
+        WebRequest request
+    ) throws IOException {
+        SlotCodec codec = slotCodecs.forAccept(accept);
+        if (request.checkNotModified(etag(codec == null ? null : codec.subprotocol()))) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+        List<SlotView> slots;
+        if (lotId == null && occupied == null && sensorId == null && after == null && limit == null) {
+            slots = parkingService.getAllSlotViews();
+        } else {
+            SlotPage page = parkingService.getSlotPage(lotId, occupied, sensorId, after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+            slots = page.slots();
+            if (page.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, String.valueOf(page.nextCursor()));
+            }
+        }
+        if (codec == null) {
+            return response.body(slots);
+        }
+        return response.contentType(codec.mediaType()).body(codec.encode(slots));
     }
 
+    // slots=false leaves out each lot's slots, for clients that only need the lots
     @GetMapping("/lots")
-    public List<ParkingLot> getAllLots() {
-        return parkingService.getAllLots();
+    public List<LotView> getAllLots(@RequestParam(defaultValue = "true") boolean slots, WebRequest request) {
+        if (request.checkNotModified(etag(null))) {
+            return null;
+        }
+        return parkingService.getAllLotViews(slots);
+    }
+
+    @GetMapping("/lots/{id}/availability")
+    public LotAvailability getLotAvailability(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(etag(null))) {
+            return null;
+        }
+        return parkingService.getLotAvailability(id);
+    }
+
+    @GetMapping("/lots/availability")
+    public List<LotAvailability> getAllLotAvailability(WebRequest request) {
+        if (request.checkNotModified(etag(null))) {
+            return null;
+        }
+        return parkingService.getAllLotAvailability();
+    }
+
+    @GetMapping("/lots/nearby")
+    public List<NearbyLot> getNearbyLots(
+        @RequestParam double lat,
+        @RequestParam double lon,
+        @RequestParam(defaultValue = "2000") double radius,
+        @RequestParam(defaultValue = "0") int minFree,
+        WebRequest request
+    ) {
+        if (request.checkNotModified(etag(null))) {
+            return null;
+        }
+        return parkingService.findNearbyLots(lat, lon, radius, minFree);
+    }
+
+    // strong ETag from the data version, read before the data; the variant
+    // tells apart encodings of the same URL
+    private String etag(String variant) {
+        long version = parkingService.getDataVersion();
+        return "\"" + version + (variant == null ? "" : "-" + variant) + "\"";
     }
 
     //Create Requests
 
     @PostMapping("/lots")
-    public ParkingLot createParkingLot(@RequestBody ParkingLot lot) {
-        return parkingService.createParkingLot(lot);
+    public LotView createParkingLot(@RequestBody ParkingLot lot) {
+        return LotView.of(parkingService.createParkingLot(lot));
     }
 
     @PostMapping("/lots/{lotId}/slots")
-    public ParkingSlot addSlotToLot(@PathVariable Long lotId, @RequestBody ParkingSlot slot) {
-        return parkingService.addSlotToLot(lotId,slot);
+    public SlotView addSlotToLot(@PathVariable Long lotId, @RequestBody ParkingSlot slot) {
+        return SlotView.of(parkingService.addSlotToLot(lotId,slot));
     }
     
+    @PostMapping("/lots/{lotId}/slots/bulk")
+    public List<SlotView> addSlotsToLot(@PathVariable Long lotId, @RequestBody List<ParkingSlot> slots) {
+        return parkingService.addSlotsToLot(lotId, slots).stream().map(SlotView::of).toList();
+    }
+
     @DeleteMapping("/lots/{id}")
     public ResponseEntity<?> deleteLot(@PathVariable Long id){
         parkingService.deleteParkingLot(id);
@@ -53,13 +144,13 @@ public class ParkingController {
     
     //Updating data
     @PutMapping("/slots/{id}/status")
-    public ParkingSlot updateSlotStatus(@PathVariable Long id, @RequestParam boolean occupied) {
-    return parkingService.updateSlotStatus(id, occupied);    
+    public SlotView updateSlotStatus(@PathVariable Long id, @RequestParam boolean occupied) {
+    return SlotView.of(parkingService.updateSlotStatus(id, occupied));    
     }
 
     @PutMapping("slots/{id}")
-    public ParkingSlot updateSlotDetails(@PathVariable Long id, @RequestBody ParkingSlot slotDetails) {
-    return parkingService.updateSLotDetails(id,slotDetails);    
+    public SlotView updateSlotDetails(@PathVariable Long id, @RequestBody ParkingSlot slotDetails) {
+    return SlotView.of(parkingService.updateSLotDetails(id,slotDetails));    
     }
     
     //deleting data
@@ -0,0 +1,7 @@
+package com.smartpark.parking_backend.dto;
+
+/**
+ * Free/occupied/total slot counts of one parking lot.
+ */
+public record LotAvailability(Long lotId, int total, int occupied, int free) {
+}
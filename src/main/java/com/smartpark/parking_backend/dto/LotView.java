@@ -0,0 +1,33 @@
+package com.smartpark.parking_backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.smartpark.parking_backend.model.ParkingLot;
+
+import java.util.List;
+
+/**
+ * Wire shape of a parking lot. {@code parkingSlots} holds its slots as flat
+ * {@link SlotView}s, or is left out when the caller did not ask for them.
+ */
+public record LotView(
+    Long id,
+    String name,
+    String address,
+    Double latitude,
+    Double longitude,
+    @JsonInclude(JsonInclude.Include.NON_NULL) List<SlotView> parkingSlots
+) {
+
+    // used by the projection query, which never loads slots
+    public LotView(Long id, String name, String address, Double latitude, Double longitude) {
+        this(id, name, address, latitude, longitude, null);
+    }
+
+    public static LotView of(ParkingLot lot) {
+        return new LotView(lot.getId(), lot.getName(), lot.getAddress(), lot.getLatitude(), lot.getLongitude());
+    }
+
+    public LotView withSlots(List<SlotView> slots) {
+        return new LotView(id, name, address, latitude, longitude, slots);
+    }
+}
@@ -0,0 +1,17 @@
+package com.smartpark.parking_backend.dto;
+
+/**
+ * A lot returned by the nearby search, with its distance from the query point
+ * and its live slot counts.
+ */
+public record NearbyLot(
+    Long lotId,
+    String name,
+    String address,
+    double latitude,
+    double longitude,
+    double distanceMeters,
+    int total,
+    int free
+) {
+}
@@ -0,0 +1,10 @@
+package com.smartpark.parking_backend.dto;
+
+import java.util.List;
+
+/**
+ * One page of a slot listing. {@code nextCursor} is the id to pass as
+ * {@code after} for the next page, or {@code null} on the last page.
+ */
+public record SlotPage(List<SlotView> slots, Long nextCursor) {
+}
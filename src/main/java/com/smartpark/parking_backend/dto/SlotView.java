@@ -0,0 +1,15 @@
+package com.smartpark.parking_backend.dto;
+
+import com.smartpark.parking_backend.model.ParkingSlot;
+
+/**
+ * Wire shape of a parking slot: the lot is referenced by id instead of being
+ * embedded in every slot.
+ */
+public record SlotView(Long id, Long lotId, Integer number, boolean occupied) {
+
+    public static SlotView of(ParkingSlot slot) {
+        Long lotId = slot.getParkingLot() == null ? null : slot.getParkingLot().getId();
+        return new SlotView(slot.getId(), lotId, slot.getSlotNumber(), slot.getOccupied());
+    }
+}
@@ -7,7 +7,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
 public class ParkingLot {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled sequence so Hibernate can batch inserts; IDENTITY forces one insert per row
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_lot_seq")
+    @SequenceGenerator(name = "parking_lot_seq", sequenceName = "parking_lot_seq", allocationSize = 50)
     private Long id;
 
     private String name;
@@ -4,13 +4,22 @@ import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_parking_slot_sensor_id", columnList = "sensorId"),
+    // keyset pages of one lot: where parking_lot_id = ? and id > ? order by id
+    @Index(name = "idx_parking_slot_lot_id", columnList = "parking_lot_id, id")
+})
 public class ParkingSlot {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled sequence so Hibernate can batch inserts; IDENTITY forces one insert per row
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parking_slot_seq")
+    @SequenceGenerator(name = "parking_slot_seq", sequenceName = "parking_slot_seq", allocationSize = 50)
     private Long id;
 
     private Integer slotNumber; // e.g., 101
 
-    private boolean isOccupied;
+    // volatile: the occupancy store shares instances and flips this while REST,
+    // the publisher and the write-behind read it without a lock
+    private volatile boolean isOccupied;
     private String sensorId;   // hardware id (optional)
 
     @ManyToOne
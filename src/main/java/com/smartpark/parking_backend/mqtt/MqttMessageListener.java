@@ -5,7 +5,8 @@ import org.springframework.stereotype.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.json.JSONObject;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 @Component
 public class MqttMessageListener {
@@ -25,82 +26,59 @@ public class MqttMessageListener {
         System.out.println("MQTT Response: " + payload);
         System.out.println("\n");
 
+        SensorEvent event = parseEvent(topic, payload);
+        if (event == null) {
+            System.out.println("ERROR: Failed to parse sensor payload");
+            System.out.println("Raw payload: " + payload);
+            return;
+        }
+        System.out.println("Parsed - SensorId: " + event.sensorId() + ", SlotId: " + event.slotId() + ", IsOccupied: " + event.occupied());
         try {
-            JSONObject json = new JSONObject(payload);
-
-            Long slotId = null;
-            Boolean isOccupied = null;
-            String sensorId = null;
-            
-            System.out.println("JSON Payload: " + json.toString());
-            if (json.has("sensorId")) {
-                sensorId = json.get("sensorId").toString().trim();
-                if (sensorId.isEmpty()) {
-                    sensorId = null;
-                }
-            }
-            if (sensorId == null) {
-                sensorId = extractSensorIdFromTopic(topic);
-            }
-            String spotValue = json.get("spot").toString().trim();
-            if (!spotValue.matches("\\d+")) {
-                // so we can extract digits from values like "spot1" or "spot-2"
-                //this is a problem in embedded payload, discuss with awais
-                spotValue = spotValue.replaceAll("\\D+", "");
-            }
-            if (!spotValue.isEmpty()) {
-                slotId = Long.valueOf(spotValue);
-            }
-            Object statusValue = json.get("status");
-            if (statusValue instanceof Boolean) {
-                isOccupied = (Boolean) statusValue;
-            } else if (statusValue instanceof Number) {
-                isOccupied = ((Number) statusValue).intValue() != 0;
-            } else {
-                String statusString = statusValue.toString().trim();
-                isOccupied = "1".equals(statusString) || "true".equalsIgnoreCase(statusString);
-            }
-
-            System.out.println("Parsed - SensorId: " + sensorId + ", SlotId: " + slotId + ", IsOccupied: " + isOccupied);
-
-            if (isOccupied != null) {
-                if (sensorId != null) {
-                    int updatedCount = parkingService.updateSlotsStatusBySensorId(sensorId, isOccupied);
-                    if (updatedCount > 0) {
-                        String statusString = isOccupied ? "OCCUPIED" : "FREE";
-                        System.out.println("SUCCESS: Updated " + updatedCount + " slot(s) for sensor " + sensorId + " to " + statusString);
-                        return;
-                    }
-                }
-                if (slotId != null) {
-                    int updatedCount = parkingService.updateSlotStatusBySlotIdUsingSensor(slotId, isOccupied);
-                    String statusString = isOccupied ? "OCCUPIED" : "FREE";
-                    System.out.println("SUCCESS: Updated " + updatedCount + " slot(s) for slot " + slotId + " to " + statusString);
-                } else {
-                    System.out.println("SensorId=" + sensorId + ", SlotId=" + slotId + ", IsOccupied=" + isOccupied);
-                    System.out.println("Full JSON: " + json.toString(2));
-                }
-            } else {
-                System.out.println("SensorId=" + sensorId + ", SlotId=" + slotId + ", IsOccupied=" + isOccupied);
-                System.out.println("Full JSON: " + json.toString(2));
-            }
-
+            applyEvent(event);
         } catch (Exception e) {
-            System.out.println("ERROR: Failed to parse JSON");
+            System.out.println("ERROR: Failed to apply sensor update");
             System.out.println("Error: " + e.getMessage());
-            System.out.println("Raw payload (non-JSON): " + payload);
         }
     }
 
-    private String extractSensorIdFromTopic(String topic) {
-        if (topic == null || topic.trim().isEmpty()) {
+    /**
+     * Parses a sensor payload into an event, or returns {@code null} when the
+     * payload is not usable.
+     */
+    public SensorEvent parseEvent(String topic, String payload) {
+        if (payload == null) {
             return null;
         }
-        String[] parts = topic.split("/");
-        if (parts.length == 0) {
-            return null;
+        return parseEvent(topic, ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public SensorEvent parseEvent(String topic, ByteBuffer payload) {
+        SensorEvent event = SensorPayloadParser.parse(topic, payload);
+        if (event == null) {
+            logger.debug("Ignoring unusable payload on {}", topic);
+        }
+        return event;
+    }
+
+    /**
+     * Applies a single event: all slots bound to the sensor first, then the
+     * spot number as a fallback when the sensor is unknown.
+     */
+    public void applyEvent(SensorEvent event) {
+        boolean isOccupied = event.occupied();
+        String statusString = isOccupied ? "OCCUPIED" : "FREE";
+        if (event.sensorId() != null) {
+            int updatedCount = parkingService.updateSlotsStatusBySensorId(event.sensorId(), isOccupied);
+            if (updatedCount > 0) {
+                System.out.println("SUCCESS: Updated " + updatedCount + " slot(s) for sensor " + event.sensorId() + " to " + statusString);
+                return;
+            }
+        }
+        if (event.slotId() != null) {
+            int updatedCount = parkingService.updateSlotStatusBySlotIdUsingSensor(event.slotId(), isOccupied);
+            System.out.println("SUCCESS: Updated " + updatedCount + " slot(s) for slot " + event.slotId() + " to " + statusString);
+        } else {
+            logger.debug("No slot matched sensor {}", event.sensorId());
         }
-        String candidate = parts[parts.length - 1].trim();
-        return candidate.isEmpty() ? null : candidate;
     }
 }
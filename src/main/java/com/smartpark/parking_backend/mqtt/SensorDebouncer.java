@@ -0,0 +1,112 @@
+package com.smartpark.parking_backend.mqtt;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Per-sensor debounce in front of the ingest batch. A reading that matches
+ * the slot's current state is dropped. A reading that differs is held back
+ * until the sensor has repeated it {@code readings} times or kept it for
+ * {@code stableMs} without flipping back; a flip back cancels it. With both
+ * at zero every real change passes straight away.
+ *
+ * <p>The current state comes from the occupancy store rather than from what
+ * this class has let through, so changes made through the API are never
+ * masked. Not thread-safe: each ingest partition owns one, and a sensor
+ * always lands in the same partition.
+ */
+final class SensorDebouncer {
+
+    private record Pending(SensorEvent event, long sinceNanos, int count) {
+    }
+
+    private final long stableNanos;
+    private final int readings;
+    // null when the target is unknown here; such events are not debounced
+    private final Function<SensorEvent, Boolean> currentState;
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    SensorDebouncer(long stableMs, int readings, Function<SensorEvent, Boolean> currentState) {
+        this.stableNanos = Math.max(0, stableMs) * 1_000_000L;
+        this.readings = readings;
+        this.currentState = currentState;
+    }
+
+    /**
+     * Returns the event when it should be applied now, or {@code null} when
+     * it is a repeat or still has to prove itself.
+     */
+    SensorEvent offer(SensorEvent event, long nowNanos) {
+        String key = event.key();
+        Boolean current = currentState.apply(event);
+        if (current == null) {
+            pending.remove(key);
+            return event;
+        }
+        if (current == event.occupied()) {
+            pending.remove(key);
+            return null;
+        }
+        Pending previous = pending.get(key);
+        Pending next = previous != null && previous.event().occupied() == event.occupied()
+            ? new Pending(event, previous.sinceNanos(), previous.count() + 1)
+            : new Pending(event, nowNanos, 1);
+        if (confirmed(next, nowNanos)) {
+            pending.remove(key);
+            return event;
+        }
+        pending.put(key, next);
+        return null;
+    }
+
+    /**
+     * Moves every pending change that has now been stable long enough into
+     * {@code into}. Needed because most sensors only report on change.
+     */
+    void drainDue(long nowNanos, Map<String, SensorEvent> into) {
+        if (stableNanos == 0) {
+            return;
+        }
+        drain(nowNanos, false, into);
+    }
+
+    /**
+     * Moves every pending change into {@code into}, stable or not. Used on
+     * shutdown, where the latest reading is better than none.
+     */
+    void drainAll(Map<String, SensorEvent> into) {
+        drain(0, true, into);
+    }
+
+    private void drain(long nowNanos, boolean all, Map<String, SensorEvent> into) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Iterator<Pending> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            Pending next = iterator.next();
+            if (!all && nowNanos - next.sinceNanos() < stableNanos) {
+                continue;
+            }
+            iterator.remove();
+            Boolean current = currentState.apply(next.event());
+            if (current == null || current != next.event().occupied()) {
+                into.put(next.event().key(), next.event());
+            }
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private boolean confirmed(Pending next, long nowNanos) {
+        if (stableNanos == 0 && readings <= 0) {
+            return true;
+        }
+        return (readings > 0 && next.count() >= readings)
+            || (stableNanos > 0 && nowNanos - next.sinceNanos() >= stableNanos);
+    }
+}
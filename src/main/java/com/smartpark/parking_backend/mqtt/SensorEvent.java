@@ -0,0 +1,25 @@
+package com.smartpark.parking_backend.mqtt;
+
+/**
+ * A parsed sensor reading. Either {@code sensorId} or {@code slotId} identifies
+ * the target; the sensor id wins when both are present.
+ */
+public record SensorEvent(String sensorId, Long slotId, boolean occupied) {
+
+    /**
+     * Coalescing key: later readings with the same key replace earlier ones.
+     * The sensor id alone is not enough, since it falls back to the topic and
+     * every spot published on that topic would then share one key.
+     */
+    public String key() {
+        if (sensorId == null) {
+            return "#" + slotId;
+        }
+        return slotId == null ? sensorId : sensorId + "#" + slotId;
+    }
+
+    // partition key: all readings of one sensor go through the same worker, in order
+    String partitionKey() {
+        return sensorId != null ? sensorId : "#" + slotId;
+    }
+}
@@ -0,0 +1,306 @@
+package com.smartpark.parking_backend.mqtt;
+
+import com.smartpark.parking_backend.config.IngestProperties;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.service.OccupancyStore;
+import com.smartpark.parking_backend.service.ParkingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded ingest stage between the MQTT callback and {@link ParkingService}.
+ * Events are queued, coalesced per sensor and spot inside a short window and applied as
+ * one batch, so a burst of readings costs one lookup, one save and one broadcast.
+ *
+ * <p>The work is split over several partitions, each with its own queue and
+ * worker. An event goes to the partition its sensor hashes to, so readings of
+ * one sensor stay in order while a busy garage only holds up its own partition.
+ *
+ * <p>Each worker runs its events through a {@link SensorDebouncer} first, so
+ * repeats of the current state and short flaps never reach the service.
+ *
+ * <p>MQTT messages are never waited on: a reading for a full partition is
+ * parked with its acknowledgement until that partition's worker makes room,
+ * so one slow partition does not hold up the listener feeding the others.
+ */
+@Component
+public class SensorEventPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SensorEventPipeline.class);
+
+    private final IngestProperties ingestProperties;
+    private final MqttMessageListener messageListener;
+    private final ParkingService parkingService;
+    private final OccupancyStore occupancyStore;
+
+    private List<Partition> partitions;
+    private List<Thread> workers;
+    private volatile boolean running;
+
+    public SensorEventPipeline(
+        IngestProperties ingestProperties,
+        MqttMessageListener messageListener,
+        ParkingService parkingService,
+        OccupancyStore occupancyStore
+    ) {
+        this.ingestProperties = ingestProperties;
+        this.messageListener = messageListener;
+        this.parkingService = parkingService;
+        this.occupancyStore = occupancyStore;
+    }
+
+    @PostConstruct
+    public void start() {
+        int count = ingestProperties.getWorkers() > 0
+            ? ingestProperties.getWorkers()
+            : Runtime.getRuntime().availableProcessors();
+        // the configured capacity is shared out, not multiplied
+        int capacity = Math.max(1, ingestProperties.getQueueCapacity() / count);
+        partitions = new ArrayList<>(count);
+        workers = new ArrayList<>(count);
+        running = true;
+        for (int i = 0; i < count; i++) {
+            Partition partition = new Partition(capacity);
+            Thread worker = new Thread(() -> run(partition));
+            worker.setDaemon(true);
+            worker.setName("mqtt-ingest-" + i);
+            partitions.add(partition);
+            workers.add(worker);
+        }
+        workers.forEach(Thread::start);
+        logger.info("Started {} ingest workers", count);
+    }
+
+    /**
+     * Lets the workers apply what is queued, plus any change the debouncer
+     * still holds back, waiting up to five seconds in total.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (workers == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (Thread worker : workers) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining > 0) {
+                    worker.join(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues the event without waiting and runs {@code onAccepted} once its
+     * partition has taken it: right away when there is room, otherwise from
+     * that partition's worker as it drains. Nothing is dropped; the MQTT
+     * client passes the acknowledgement here, so readings parked behind a
+     * full partition stay unacknowledged and {@code mqtt.receive-maximum}
+     * bounds how many can pile up.
+     */
+    public void submit(String topic, ByteBuffer payload, Runnable onAccepted) {
+        SensorEvent event = messageListener.parseEvent(topic, payload);
+        if (event == null) {
+            onAccepted.run();
+            return;
+        }
+        if (partitionFor(event).offerOrPark(event, onAccepted)) {
+            onAccepted.run();
+        }
+    }
+
+    private Partition partitionFor(SensorEvent event) {
+        return partitions.get(Math.floorMod(event.partitionKey().hashCode(), partitions.size()));
+    }
+
+    private void run(Partition partition) {
+        BlockingQueue<SensorEvent> queue = partition.queue;
+        Map<String, SensorEvent> latest = new LinkedHashMap<>();
+        List<SensorEvent> drained = new ArrayList<>();
+        int maxBatchSize = Math.max(1, ingestProperties.getMaxBatchSize());
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(ingestProperties.getBatchWindowMs());
+        // a reading already let into this batch counts as the current state
+        SensorDebouncer debouncer = new SensorDebouncer(
+            ingestProperties.getDebounceStableMs(),
+            ingestProperties.getDebounceReadings(),
+            event -> {
+                SensorEvent accepted = latest.get(event.key());
+                return accepted != null ? accepted.occupied() : currentState(event);
+            });
+
+        while (running || !queue.isEmpty()) {
+            try {
+                // the poll timeout also paces the check for pending changes that became stable
+                SensorEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    partition.admitParked();
+                    offer(debouncer, first, latest);
+                    long deadline = System.nanoTime() + windowNanos;
+                    int received = 1;
+                    while (received < maxBatchSize) {
+                        queue.drainTo(drained, maxBatchSize - received);
+                        if (drained.isEmpty()) {
+                            long remaining = deadline - System.nanoTime();
+                            SensorEvent next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                            if (next == null) {
+                                break;
+                            }
+                            drained.add(next);
+                        }
+                        partition.admitParked();
+                        for (SensorEvent event : drained) {
+                            offer(debouncer, event, latest);
+                        }
+                        received += drained.size();
+                        drained.clear();
+                    }
+                }
+                debouncer.drainDue(System.nanoTime(), latest);
+                flush(latest.values());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Failed to apply sensor batch", e);
+            } finally {
+                latest.clear();
+                drained.clear();
+            }
+        }
+        // the queue is drained; changes still waiting to prove themselves would die with the worker
+        try {
+            debouncer.drainAll(latest);
+            flush(latest.values());
+        } catch (Exception e) {
+            logger.error("Failed to apply pending sensor changes on shutdown", e);
+        }
+    }
+
+    private static void offer(SensorDebouncer debouncer, SensorEvent event, Map<String, SensorEvent> latest) {
+        SensorEvent accepted = debouncer.offer(event, System.nanoTime());
+        if (accepted != null) {
+            latest.put(accepted.key(), accepted);
+        }
+    }
+
+    /**
+     * Occupancy the event's target has right now, or {@code null} when it is
+     * unknown or a sensor's slots disagree. Resolved like {@link #flush}: the
+     * sensor's slots first, the spot number otherwise.
+     */
+    Boolean currentState(SensorEvent event) {
+        List<ParkingSlot> slots = occupancyStore.slotsForSensor(event.sensorId());
+        if (!slots.isEmpty()) {
+            boolean occupied = slots.get(0).getOccupied();
+            for (ParkingSlot slot : slots) {
+                if (slot.getOccupied() != occupied) {
+                    return null;
+                }
+            }
+            return occupied;
+        }
+        ParkingSlot slot = occupancyStore.get(event.slotId());
+        return slot == null ? null : slot.getOccupied();
+    }
+
+    /**
+     * One worker's queue plus the readings waiting for room in it. While
+     * anything is parked new readings queue up behind it, so a sensor's
+     * readings keep their order.
+     */
+    private static final class Partition {
+        final BlockingQueue<SensorEvent> queue;
+        // guarded by this
+        private final ArrayDeque<Parked> parked = new ArrayDeque<>();
+
+        Partition(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Queues the event and returns {@code true}, or parks it with its
+         * callback and returns {@code false} when the queue is full.
+         */
+        synchronized boolean offerOrPark(SensorEvent event, Runnable onAccepted) {
+            if (parked.isEmpty() && queue.offer(event)) {
+                return true;
+            }
+            parked.add(new Parked(event, onAccepted));
+            return false;
+        }
+
+        /**
+         * Moves parked readings into the queue while it has room. Called by
+         * the worker after taking events out; callbacks run outside the lock.
+         */
+        void admitParked() {
+            List<Runnable> accepted;
+            synchronized (this) {
+                if (parked.isEmpty()) {
+                    return;
+                }
+                accepted = new ArrayList<>();
+                while (!parked.isEmpty() && queue.offer(parked.peek().event())) {
+                    accepted.add(parked.poll().onAccepted());
+                }
+            }
+            for (Runnable callback : accepted) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to acknowledge sensor event: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private record Parked(SensorEvent event, Runnable onAccepted) {
+    }
+
+    void flush(Collection<SensorEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Map<String, Boolean> statusBySensorId = new LinkedHashMap<>();
+        for (SensorEvent event : events) {
+            if (event.sensorId() != null) {
+                statusBySensorId.put(event.sensorId(), event.occupied());
+            }
+        }
+        Set<String> matched = statusBySensorId.isEmpty()
+            ? Set.of()
+            : parkingService.updateSlotsStatusBySensorIds(statusBySensorId);
+
+        // unknown sensors fall back to the spot number, same as the single-message path
+        for (SensorEvent event : events) {
+            if (event.slotId() == null || (event.sensorId() != null && matched.contains(event.sensorId()))) {
+                continue;
+            }
+            try {
+                parkingService.updateSlotStatusBySlotIdUsingSensor(event.slotId(), event.occupied());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to update slot {}: {}", event.slotId(), e.getMessage());
+            }
+        }
+        logger.debug("Applied {} coalesced sensor events", events.size());
+    }
+}
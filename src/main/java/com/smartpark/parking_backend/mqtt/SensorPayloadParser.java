@@ -0,0 +1,449 @@
+package com.smartpark.parking_backend.mqtt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser for the {@code {sensorId, spot, status}} sensor payload that reads the
+ * MQTT payload buffer in place. It follows the same lenient rules as the old
+ * org.json based parsing:
+ * <ul>
+ *   <li>{@code spot} keeps only its digits, so {@code "spot1"} and {@code "spot-2"} work</li>
+ *   <li>{@code status} accepts booleans, numbers (non-zero = occupied) and the
+ *       strings {@code "1"} / {@code "true"}</li>
+ *   <li>a missing or blank {@code sensorId} falls back to the last topic segment</li>
+ * </ul>
+ * The only allocations on the common path are the sensor id string and the event.
+ * The buffer position is never changed.
+ */
+public final class SensorPayloadParser {
+
+    private static final byte[] SENSOR_ID = ascii("sensorId");
+    private static final byte[] SPOT = ascii("spot");
+    private static final byte[] STATUS = ascii("status");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] ONE = ascii("1");
+
+    private static final int KEY_OTHER = 0;
+    private static final int KEY_SENSOR_ID = 1;
+    private static final int KEY_SPOT = 2;
+    private static final int KEY_STATUS = 3;
+
+    private SensorPayloadParser() {
+    }
+
+    /**
+     * Returns the parsed event, or {@code null} when the payload is not a JSON
+     * object, lacks {@code spot} or {@code status}, or names no target at all.
+     */
+    public static SensorEvent parse(String topic, ByteBuffer payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return new Cursor(payload).parse(topic);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    static String extractSensorIdFromTopic(String topic) {
+        if (topic == null) {
+            return null;
+        }
+        int end = topic.length();
+        while (end > 0 && topic.charAt(end - 1) == '/') {
+            end--;
+        }
+        int start = topic.lastIndexOf('/', end - 1) + 1;
+        String candidate = topic.substring(start, end).trim();
+        return candidate.isEmpty() ? null : candidate;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class Cursor {
+        private final ByteBuffer buf;
+        private final int limit;
+        private int pos;
+
+        // scratch values set by the value readers
+        private int start;
+        private int end;
+        private boolean escaped;
+
+        private String sensorId;
+        private boolean hasSpot;
+        private long spot;
+        private boolean spotHasDigits;
+        private boolean hasStatus;
+        private boolean status;
+
+        Cursor(ByteBuffer buf) {
+            this.buf = buf;
+            this.pos = buf.position();
+            this.limit = buf.limit();
+        }
+
+        SensorEvent parse(String topic) {
+            if (!readObject()) {
+                return null;
+            }
+            if (!hasSpot || !hasStatus) {
+                return null;
+            }
+            Long slotId = spotHasDigits ? spot : null;
+            String target = sensorId != null ? sensorId : extractSensorIdFromTopic(topic);
+            if (target == null && slotId == null) {
+                return null;
+            }
+            return new SensorEvent(target, slotId, status);
+        }
+
+        private boolean readObject() {
+            skipWhitespace();
+            if (!consume('{')) {
+                return false;
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return true;
+            }
+            while (true) {
+                skipWhitespace();
+                int key = readKey();
+                if (key < 0) {
+                    return false;
+                }
+                skipWhitespace();
+                if (!consume(':')) {
+                    return false;
+                }
+                skipWhitespace();
+                boolean ok = switch (key) {
+                    case KEY_SENSOR_ID -> readSensorId();
+                    case KEY_SPOT -> readSpot();
+                    case KEY_STATUS -> readStatus();
+                    default -> skipValue();
+                };
+                if (!ok) {
+                    return false;
+                }
+                skipWhitespace();
+                if (consume(',')) {
+                    continue;
+                }
+                return consume('}');
+            }
+        }
+
+        private int readKey() {
+            if (pos >= limit) {
+                return -1;
+            }
+            byte b = buf.get(pos);
+            if (b == '"' || b == '\'') {
+                if (!readString()) {
+                    return -1;
+                }
+            } else if (!readBareToken()) {
+                return -1;
+            }
+            if (escaped) {
+                return KEY_OTHER;
+            }
+            if (regionEquals(SENSOR_ID, false)) {
+                return KEY_SENSOR_ID;
+            }
+            if (regionEquals(SPOT, false)) {
+                return KEY_SPOT;
+            }
+            if (regionEquals(STATUS, false)) {
+                return KEY_STATUS;
+            }
+            return KEY_OTHER;
+        }
+
+        private boolean readSensorId() {
+            if (pos >= limit) {
+                return false;
+            }
+            byte b = buf.get(pos);
+            if (b == '"' || b == '\'') {
+                if (!readString()) {
+                    return false;
+                }
+            } else if (b == '{' || b == '[') {
+                return skipValue();
+            } else {
+                if (!readBareToken()) {
+                    return false;
+                }
+                if (regionEquals(NULL, false)) {
+                    return true;
+                }
+            }
+            trimRegion();
+            sensorId = start < end ? decodeRegion() : null;
+            return true;
+        }
+
+        private boolean readSpot() {
+            if (pos >= limit) {
+                return false;
+            }
+            byte b = buf.get(pos);
+            if (b == '{' || b == '[') {
+                hasSpot = true;
+                spotHasDigits = false;
+                return skipValue();
+            }
+            boolean ok = (b == '"' || b == '\'') ? readString() : readBareToken();
+            if (!ok) {
+                return false;
+            }
+            long value = 0;
+            boolean digits = false;
+            for (int i = start; i < end; i++) {
+                byte c = buf.get(i);
+                if (c == '\\') {
+                    // escape sequences never contribute digits
+                    i += (i + 1 < end && buf.get(i + 1) == 'u') ? 5 : 1;
+                    continue;
+                }
+                if (c >= '0' && c <= '9') {
+                    if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+                        return false;
+                    }
+                    value = value * 10 + (c - '0');
+                    digits = true;
+                }
+            }
+            hasSpot = true;
+            spot = value;
+            spotHasDigits = digits;
+            return true;
+        }
+
+        private boolean readStatus() {
+            if (pos >= limit) {
+                return false;
+            }
+            byte b = buf.get(pos);
+            hasStatus = true;
+            if (b == '{' || b == '[') {
+                status = false;
+                return skipValue();
+            }
+            if (b == '"' || b == '\'') {
+                if (!readString()) {
+                    return false;
+                }
+                trimRegion();
+                if (escaped) {
+                    String value = decodeRegion().trim();
+                    status = "1".equals(value) || "true".equalsIgnoreCase(value);
+                } else {
+                    status = regionEquals(ONE, false) || regionEquals(TRUE, true);
+                }
+                return true;
+            }
+            if (!readBareToken()) {
+                return false;
+            }
+            if (regionEquals(TRUE, true)) {
+                status = true;
+            } else if (regionEquals(FALSE, true) || regionEquals(NULL, true)) {
+                status = false;
+            } else if (b == '-' || (b >= '0' && b <= '9')) {
+                status = numberIsNonZeroInt();
+            } else {
+                // bare words are strings in org.json; only "1"/"true" mean occupied
+                status = false;
+            }
+            return true;
+        }
+
+        // mirrors ((Number) value).intValue() != 0 for the token in [start, end)
+        private boolean numberIsNonZeroInt() {
+            for (int i = start; i < end; i++) {
+                byte c = buf.get(i);
+                if (c == 'e' || c == 'E') {
+                    return exponentNumberIsNonZeroInt();
+                }
+            }
+            for (int i = start; i < end; i++) {
+                byte c = buf.get(i);
+                if (c == '.') {
+                    return false;
+                }
+                if (c >= '1' && c <= '9') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean exponentNumberIsNonZeroInt() {
+            try {
+                return (int) Double.parseDouble(decodeRegion()) != 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        private boolean skipValue() {
+            if (pos >= limit) {
+                return false;
+            }
+            byte b = buf.get(pos);
+            if (b == '"' || b == '\'') {
+                return readString();
+            }
+            if (b == '{' || b == '[') {
+                int depth = 0;
+                while (pos < limit) {
+                    byte c = buf.get(pos);
+                    if (c == '"' || c == '\'') {
+                        if (!readString()) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                        if (depth == 0) {
+                            pos++;
+                            return true;
+                        }
+                    }
+                    pos++;
+                }
+                return false;
+            }
+            return readBareToken();
+        }
+
+        // reads a quoted string; [start, end) is the raw content between the quotes
+        private boolean readString() {
+            byte quote = buf.get(pos++);
+            start = pos;
+            escaped = false;
+            while (pos < limit) {
+                byte c = buf.get(pos);
+                if (c == '\\') {
+                    escaped = true;
+                    pos += 2;
+                    continue;
+                }
+                if (c == quote) {
+                    end = pos;
+                    pos++;
+                    return true;
+                }
+                if (c == '\n' || c == '\r') {
+                    return false;
+                }
+                pos++;
+            }
+            return false;
+        }
+
+        // reads an unquoted number, literal or bare word
+        private boolean readBareToken() {
+            start = pos;
+            escaped = false;
+            while (pos < limit) {
+                byte c = buf.get(pos);
+                if (c == ',' || c == '}' || c == ']' || c == ':' || c == '"' || c == '\'' || (c & 0xFF) <= ' ') {
+                    break;
+                }
+                pos++;
+            }
+            end = pos;
+            return end > start;
+        }
+
+        private void trimRegion() {
+            while (start < end && (buf.get(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (buf.get(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+        }
+
+        private boolean regionEquals(byte[] expected, boolean ignoreCase) {
+            if (end - start != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                byte c = buf.get(start + i);
+                if (ignoreCase && c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String decodeRegion() {
+            int length = end - start;
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buf.get(start + i);
+            }
+            String raw = new String(bytes, StandardCharsets.UTF_8);
+            return escaped ? unescape(raw) : raw;
+        }
+
+        private static String unescape(String raw) {
+            StringBuilder out = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c != '\\' || i + 1 >= raw.length()) {
+                    out.append(c);
+                    continue;
+                }
+                char next = raw.charAt(++i);
+                switch (next) {
+                    case 'b' -> out.append('\b');
+                    case 't' -> out.append('\t');
+                    case 'n' -> out.append('\n');
+                    case 'f' -> out.append('\f');
+                    case 'r' -> out.append('\r');
+                    case 'u' -> {
+                        if (i + 4 < raw.length()) {
+                            out.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                            i += 4;
+                        }
+                    }
+                    default -> out.append(next);
+                }
+            }
+            return out.toString();
+        }
+
+        private void skipWhitespace() {
+            while (pos < limit && (buf.get(pos) & 0xFF) <= ' ') {
+                pos++;
+            }
+        }
+
+        private boolean consume(char expected) {
+            if (pos < limit && buf.get(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
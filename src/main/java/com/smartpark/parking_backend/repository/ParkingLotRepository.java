@@ -1,5 +1,17 @@
 package com.smartpark.parking_backend.repository;
+import com.smartpark.parking_backend.dto.LotView;
 import com.smartpark.parking_backend.model.ParkingLot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface ParkingLotRepository extends JpaRepository<ParkingLot, Long> { }
+import java.util.List;
+
+public interface ParkingLotRepository extends JpaRepository<ParkingLot, Long> {
+
+    @Query("select l.id from ParkingLot l")
+    List<Long> findAllIds();
+
+    // selects the columns only, so the slot collection is never touched
+    @Query("select new com.smartpark.parking_backend.dto.LotView(l.id, l.name, l.address, l.latitude, l.longitude) from ParkingLot l order by l.id")
+    List<LotView> findAllViews();
+}
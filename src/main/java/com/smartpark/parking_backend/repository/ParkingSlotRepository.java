@@ -2,9 +2,21 @@ package com.smartpark.parking_backend.repository;
 
 import com.smartpark.parking_backend.model.ParkingSlot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface ParkingSlotRepository extends JpaRepository<ParkingSlot, Long> {
+public interface ParkingSlotRepository extends JpaRepository<ParkingSlot, Long>, SlotViewQueries {
     List<ParkingSlot> findAllBySensorId(String sensorId);
+
+    List<ParkingSlot> findAllByParkingLotId(Long parkingLotId);
+
+    @Modifying
+    @Transactional
+    @Query("update ParkingSlot s set s.isOccupied = :occupied where s.id in :ids")
+    int updateOccupancy(@Param("ids") Collection<Long> ids, @Param("occupied") boolean occupied);
 }
@@ -0,0 +1,17 @@
+package com.smartpark.parking_backend.repository;
+
+import com.smartpark.parking_backend.dto.SlotView;
+
+import java.util.List;
+
+public interface SlotViewQueries {
+
+    /**
+     * Slots with an id greater than {@code afterId}, in id order, as flat views.
+     * {@code null} filters are left out of the query rather than compared
+     * against null, so each combination can use the matching index. There is
+     * no occupancy filter: the column trails the occupancy store by up to one
+     * write-behind flush.
+     */
+    List<SlotView> findViews(Long lotId, String sensorId, long afterId, int limit);
+}
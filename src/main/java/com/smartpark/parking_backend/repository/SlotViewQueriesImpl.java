@@ -0,0 +1,40 @@
+package com.smartpark.parking_backend.repository;
+
+import com.smartpark.parking_backend.dto.SlotView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+class SlotViewQueriesImpl implements SlotViewQueries {
+
+    private final EntityManager entityManager;
+
+    SlotViewQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<SlotView> findViews(Long lotId, String sensorId, long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder(
+            "select new com.smartpark.parking_backend.dto.SlotView(s.id, s.parkingLot.id, s.slotNumber, s.isOccupied)"
+                + " from ParkingSlot s where s.id > :afterId");
+        if (lotId != null) {
+            jpql.append(" and s.parkingLot.id = :lotId");
+        }
+        if (sensorId != null) {
+            jpql.append(" and s.sensorId = :sensorId");
+        }
+        jpql.append(" order by s.id");
+
+        TypedQuery<SlotView> query = entityManager.createQuery(jpql.toString(), SlotView.class);
+        query.setParameter("afterId", afterId);
+        if (lotId != null) {
+            query.setParameter("lotId", lotId);
+        }
+        if (sensorId != null) {
+            query.setParameter("sensorId", sensorId);
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,179 @@
+package com.smartpark.parking_backend.service;
+
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-size lat/lon grid over lot coordinates. A radius query only looks at
+ * the cells overlapping the search box, then checks the real distance.
+ * Lots change rarely, so every change rebuilds an immutable grid that readers
+ * use without locking.
+ */
+@Component
+public class LotSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LotSpatialIndex.class);
+
+    static final double CELL_DEGREES = 0.05; // about 5.5 km of latitude
+    // columns around the globe; column indexes wrap at the antimeridian
+    private static final int COLUMNS = (int) Math.round(360 / CELL_DEGREES);
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180;
+
+    public record Location(Long lotId, String name, String address, double latitude, double longitude) {
+    }
+
+    public record Hit(Location location, double distanceMeters) {
+    }
+
+    private final ParkingLotRepository parkingLotRepository;
+
+    private final Map<Long, Location> locationsById = new HashMap<>();
+    private volatile Map<Long, List<Location>> cells = Map.of();
+
+    public LotSpatialIndex(ParkingLotRepository parkingLotRepository) {
+        this.parkingLotRepository = parkingLotRepository;
+    }
+
+    @PostConstruct
+    public synchronized void reload() {
+        locationsById.clear();
+        for (ParkingLot lot : parkingLotRepository.findAll()) {
+            addLocation(lot.getId(), lot.getName(), lot.getAddress(), lot.getLatitude(), lot.getLongitude());
+        }
+        rebuild();
+        logger.info("Indexed {} parking lots", locationsById.size());
+    }
+
+    public synchronized void put(ParkingLot lot) {
+        if (lot != null) {
+            put(lot.getId(), lot.getName(), lot.getAddress(), lot.getLatitude(), lot.getLongitude());
+        }
+    }
+
+    /**
+     * Indexes a lot known only by its values, such as one changed on another
+     * instance. A lot without coordinates leaves the index.
+     */
+    public synchronized void put(Long lotId, String name, String address, Double latitude, Double longitude) {
+        if (lotId == null) {
+            return;
+        }
+        locationsById.remove(lotId);
+        addLocation(lotId, name, address, latitude, longitude);
+        rebuild();
+    }
+
+    public synchronized void remove(Long lotId) {
+        if (lotId != null && locationsById.remove(lotId) != null) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the lots within {@code radiusMeters} of the point, nearest first.
+     */
+    public List<Hit> within(double latitude, double longitude, double radiusMeters) {
+        Map<Long, List<Location>> grid = cells;
+        double latSpan = radiusMeters / METERS_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude))));
+        double lonSpan = Math.min(180.0, latSpan / cosLat);
+
+        int minRow = row(latitude - latSpan);
+        int maxRow = row(latitude + latSpan);
+        int minCol = col(longitude - lonSpan);
+        int colCount = Math.min(COLUMNS, col(longitude + lonSpan) - minCol + 1);
+
+        List<Hit> hits = new ArrayList<>();
+        long boxCells = (long) (maxRow - minRow + 1) * colCount;
+        if (boxCells > grid.size()) {
+            // huge radius: cheaper to walk the occupied cells than the box
+            for (Map.Entry<Long, List<Location>> entry : grid.entrySet()) {
+                int r = (int) (entry.getKey() >> 32);
+                int c = (int) (long) entry.getKey();
+                if (r >= minRow && r <= maxRow && Math.floorMod(c - minCol, COLUMNS) < colCount) {
+                    collect(entry.getValue(), latitude, longitude, radiusMeters, hits);
+                }
+            }
+        } else {
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int i = 0; i < colCount; i++) {
+                    List<Location> cell = grid.get(key(r, wrap(minCol + i)));
+                    if (cell != null) {
+                        collect(cell, latitude, longitude, radiusMeters, hits);
+                    }
+                }
+            }
+        }
+        hits.sort(Comparator.comparingDouble(Hit::distanceMeters));
+        return hits;
+    }
+
+    public synchronized int size() {
+        return locationsById.size();
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+            * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private static void collect(Collection<Location> cell, double latitude, double longitude,
+                                double radiusMeters, List<Hit> hits) {
+        for (Location location : cell) {
+            double distance = distanceMeters(latitude, longitude, location.latitude(), location.longitude());
+            if (distance <= radiusMeters) {
+                hits.add(new Hit(location, distance));
+            }
+        }
+    }
+
+    private void addLocation(Long lotId, String name, String address, Double latitude, Double longitude) {
+        if (lotId == null || latitude == null || longitude == null) {
+            return;
+        }
+        locationsById.put(lotId, new Location(lotId, name, address, latitude, longitude));
+    }
+
+    private void rebuild() {
+        Map<Long, List<Location>> next = new HashMap<>();
+        for (Location location : locationsById.values()) {
+            next.computeIfAbsent(key(row(location.latitude()), wrap(col(location.longitude()))), k -> new ArrayList<>())
+                .add(location);
+        }
+        next.replaceAll((k, list) -> List.copyOf(list));
+        cells = Map.copyOf(next);
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int col(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    // folds a column into [-180, 180) so a box crossing the antimeridian reaches the other side
+    private static int wrap(int col) {
+        return Math.floorMod(col + COLUMNS / 2, COLUMNS) - COLUMNS / 2;
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFFFFFFL);
+    }
+}
@@ -1,13 +1,26 @@
 package com.smartpark.parking_backend.service;
 
 import com.hivemq.client.mqtt.MqttClient;
-import com.hivemq.client.mqtt.mqtt5.Mqtt5BlockingClient;
+import com.hivemq.client.mqtt.MqttGlobalPublishFilter;
+import com.hivemq.client.mqtt.datatypes.MqttQos;
+import com.hivemq.client.mqtt.mqtt5.Mqtt5AsyncClient;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+import com.smartpark.parking_backend.bus.MqttSlotUpdateBus;
+import com.smartpark.parking_backend.config.IngestProperties;
 import com.smartpark.parking_backend.config.MqttProperties;
 import com.smartpark.parking_backend.mqtt.MqttMessageListener;
+import com.smartpark.parking_backend.mqtt.SensorEventPipeline;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
@@ -18,11 +31,25 @@ public class MqttService {
 
     private final MqttProperties mqttProperties;
     private final MqttMessageListener messageListener;
-    private Mqtt5BlockingClient client;
-
-    public MqttService(MqttProperties mqttProperties, MqttMessageListener messageListener) {
+    private final SensorEventPipeline ingestPipeline;
+    private final IngestProperties ingestProperties;
+    // only present with slots.bus.type=mqtt
+    private final MqttSlotUpdateBus slotBus;
+    private Mqtt5AsyncClient client;
+    private ExecutorService listenerExecutor;
+
+    public MqttService(
+        MqttProperties mqttProperties,
+        MqttMessageListener messageListener,
+        SensorEventPipeline ingestPipeline,
+        IngestProperties ingestProperties,
+        ObjectProvider<MqttSlotUpdateBus> slotBus
+    ) {
         this.mqttProperties = mqttProperties;
         this.messageListener = messageListener;
+        this.ingestPipeline = ingestPipeline;
+        this.ingestProperties = ingestProperties;
+        this.slotBus = slotBus.getIfAvailable();
     }
 
     @PostConstruct
@@ -37,6 +64,18 @@ public class MqttService {
             return;
         }
 
+        MqttQos qos = MqttQos.fromCode(mqttProperties.getQos());
+        if (qos == null) {
+            throw new IllegalArgumentException("mqtt.qos must be 0, 1 or 2");
+        }
+        // readings wait for ingest room unacknowledged, so only receive-maximum bounds
+        // them; QoS 0 has no acknowledgements and would let them pile up without limit
+        if (qos == MqttQos.AT_MOST_ONCE && ingestProperties.isBatchEnabled()) {
+            throw new IllegalArgumentException("mqtt.qos must be 1 or 2 while mqtt.ingest.batch.enabled is true");
+        }
+        int receiveMaximum = Math.max(1, Math.min(65535, mqttProperties.getReceiveMaximum()));
+        String topicFilter = topicFilter(mqttProperties.getTopicSubscribe(), mqttProperties.getSharedGroup());
+
         try {
             logger.info("Connecting to MQTT broker at " + mqttProperties.getBrokerHost() + ":" + mqttProperties.getBrokerPort());
 
@@ -46,66 +85,141 @@ public class MqttService {
                     .serverPort(mqttProperties.getBrokerPort())
                     .sslWithDefaultConfig()
                     .build()
-                    .toBlocking();
+                    .toAsync();
+
+            // one thread off the client's event loop; readings for a full ingest
+            // partition stay unacknowledged, and receiveMaximum makes the broker stop
+            listenerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mqtt-listener");
+                thread.setDaemon(true);
+                return thread;
+            });
+            client.publishes(MqttGlobalPublishFilter.ALL, this::handle, listenerExecutor, true);
 
             client.connectWith()
                     .simpleAuth()
                     .username(mqttProperties.getClientUsername())
                     .password(mqttProperties.getClientPassword().getBytes())
                     .applySimpleAuth()
-                    .send();
-
-            logger.info("Connected to MQTT broker successfully");
-
-            client.subscribeWith()
-                    .topicFilter(mqttProperties.getTopicSubscribe())
-                    .send();
-
-            logger.info("Subscribed to topic: " + mqttProperties.getTopicSubscribe());
-
-            startListening();
+                    .restrictions()
+                    .receiveMaximum(receiveMaximum)
+                    .applyRestrictions()
+                    .send()
+                    .thenCompose(connAck -> {
+                        logger.info("Connected to MQTT broker successfully");
+                        return client.subscribeWith()
+                                .topicFilter(topicFilter)
+                                .qos(qos)
+                                .send();
+                    })
+                    .whenComplete((subAck, error) -> {
+                        if (error != null) {
+                            logger.error("Failed to connect to MQTT broker", error);
+                        } else {
+                            logger.info("Subscribed to topic: " + topicFilter + " with " + qos);
+                            connectSlotBus();
+                        }
+                    });
 
         } catch (Exception e) {
             logger.error("Failed to connect to MQTT broker", e);
         }
     }
 
-    private void startListening() {
-        Thread thread = new Thread(() -> {
-            try {
-                client.toAsync().publishes(com.hivemq.client.mqtt.MqttGlobalPublishFilter.ALL, publish -> {
-                    String topic = publish.getTopic().toString();
-                    byte[] payloadBytes = new byte[publish.getPayload().get().remaining()];
-                    publish.getPayload().get().get(payloadBytes);
-                    String payload = new String(payloadBytes);
-
-                    System.out.println("\n=== MQTT DATA RECEIVED ===");
-                    System.out.println("Endpoint: " + topic);
-                    System.out.println("MQTT Response: " + payload);
-                    System.out.println("===========================\n");
-
-                    messageListener.processMessage(topic, payload);
+    // every instance needs every slot change, so this subscription is never shared;
+    // no-local keeps the broker from echoing this instance's own changes back to it
+    private void connectSlotBus() {
+        if (slotBus == null) {
+            return;
+        }
+        client.subscribeWith()
+                .topicFilter(slotBus.topic())
+                .qos(MqttQos.AT_LEAST_ONCE)
+                .noLocal(true)
+                .send()
+                .whenComplete((subAck, error) -> {
+                    if (error != null) {
+                        logger.error("Failed to subscribe to slot bus topic " + slotBus.topic(), error);
+                        return;
+                    }
+                    slotBus.connect(payload -> client.publishWith()
+                            .topic(slotBus.topic())
+                            .qos(MqttQos.AT_LEAST_ONCE)
+                            .payload(payload)
+                            .send()
+                            .whenComplete((result, publishError) -> {
+                                if (publishError != null) {
+                                    logger.warn("Failed to publish slot change: {}", publishError.getMessage());
+                                }
+                            }));
+                    logger.info("Slot bus connected on topic: " + slotBus.topic());
                 });
-            } catch (Exception e) {
-                logger.error("Error listening for messages", e);
-                e.printStackTrace();
+    }
+
+    /**
+     * Returns the filter to subscribe with: the topic itself, or a shared
+     * subscription when a group is set so instances split the messages.
+     */
+    static String topicFilter(String topic, String sharedGroup) {
+        if (sharedGroup == null || sharedGroup.isBlank()) {
+            return topic;
+        }
+        String group = sharedGroup.trim();
+        if (group.contains("/") || group.contains("+") || group.contains("#")) {
+            throw new IllegalArgumentException("mqtt.shared-group must not contain '/', '+' or '#'");
+        }
+        return "$share/" + group + "/" + topic;
+    }
+
+    /**
+     * Hands one publish to the ingest path and acknowledges it once accepted.
+     * In batch mode the pipeline acknowledges when the sensor's partition
+     * takes the reading, so a full partition never blocks this thread.
+     * Slot bus messages are applied off this thread too, and acknowledged
+     * by the bus once applied. Messages that fail to process are still acknowledged, otherwise each
+     * one would hold a receive slot until the connection drops.
+     */
+    void handle(Mqtt5Publish publish) {
+        String topic = publish.getTopic().toString();
+        ByteBuffer payload = publish.getPayload().orElse(null);
+
+        if (slotBus != null && topic.equals(slotBus.topic())) {
+            slotBus.receive(payload, publish::acknowledge);
+            return;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("MQTT data received on {}: {}", topic, decode(payload));
+        }
+
+        try {
+            if (ingestProperties.isBatchEnabled()) {
+                ingestPipeline.submit(topic, payload, publish::acknowledge);
+                return;
             }
-        });
+            messageListener.processMessage(topic, decode(payload));
+        } catch (RuntimeException e) {
+            logger.error("Failed to process MQTT message on {}", topic, e);
+        }
+        publish.acknowledge();
+    }
 
-        thread.setDaemon(true);
-        thread.setName("mqtt-listener");
-        thread.start();
+    private static String decode(ByteBuffer payload) {
+        return payload == null ? null : StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
     }
 
     @PreDestroy
     public void disconnect() {
         if (client != null) {
             try {
-                client.disconnect();
+                client.disconnect().get(5, TimeUnit.SECONDS);
                 logger.info("Disconnected from MQTT broker");
             } catch (Exception e) {
                 logger.error("Error disconnecting", e);
             }
         }
+        if (listenerExecutor != null) {
+            listenerExecutor.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,296 @@
+package com.smartpark.parking_backend.service;
+
+import com.smartpark.parking_backend.dto.LotAvailability;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import com.smartpark.parking_backend.repository.ParkingSlotRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Authoritative in-memory view of every slot, indexed by slot id and sensor id.
+ * Sensor updates are applied here first and persisted afterwards, so ingest
+ * never waits on a database lookup. {@link ParkingService} keeps it in sync
+ * with slot create, update and delete.
+ *
+ * <p>It also keeps per-lot total/occupied counters that move with every
+ * occupancy transition, so lot availability never needs a recount.
+ *
+ * <p>Each slot's occupancy carries a version for changes shared between
+ * instances: a hybrid clock value plus the instance that wrote it. A change
+ * from another instance only applies if its version is newer, so instances
+ * that receive two crossed changes in opposite orders still agree.
+ */
+@Component
+public class OccupancyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(OccupancyStore.class);
+
+    private final ParkingSlotRepository parkingSlotRepository;
+    private final ParkingLotRepository parkingLotRepository;
+
+    private final Map<Long, ParkingSlot> slotsById = new ConcurrentHashMap<>();
+    // values are immutable lists, replaced on every structural change
+    private final Map<String, List<ParkingSlot>> slotsBySensorId = new ConcurrentHashMap<>();
+    private final Map<Long, LotCounter> countersByLotId = new ConcurrentHashMap<>();
+    // bumped by every reload, which replaces the contents without a slot change
+    private final AtomicLong generation = new AtomicLong();
+    // occupancy versions by slot id; kept across reloads, like the clock
+    private final Map<Long, Version> versionsById = new ConcurrentHashMap<>();
+    // wall-clock millis, pushed past every version stamped or seen
+    private final AtomicLong clock = new AtomicLong();
+
+    public OccupancyStore(ParkingSlotRepository parkingSlotRepository, ParkingLotRepository parkingLotRepository) {
+        this.parkingSlotRepository = parkingSlotRepository;
+        this.parkingLotRepository = parkingLotRepository;
+    }
+
+    @PostConstruct
+    public synchronized void reload() {
+        slotsById.clear();
+        slotsBySensorId.clear();
+        countersByLotId.clear();
+        for (Long lotId : parkingLotRepository.findAllIds()) {
+            registerLot(lotId);
+        }
+        for (ParkingSlot slot : parkingSlotRepository.findAll()) {
+            put(slot);
+        }
+        generation.incrementAndGet();
+        logger.info("Loaded {} slots into the occupancy store", slotsById.size());
+    }
+
+    /**
+     * Number of reloads so far. Anything derived from the whole store, such as
+     * a cached snapshot, is stale once this moves.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public ParkingSlot get(Long slotId) {
+        return slotId == null ? null : slotsById.get(slotId);
+    }
+
+    public List<ParkingSlot> slotsForSensor(String sensorId) {
+        if (sensorId == null) {
+            return List.of();
+        }
+        return slotsBySensorId.getOrDefault(sensorId, List.of());
+    }
+
+    public List<ParkingSlot> allSlots() {
+        return new ArrayList<>(slotsById.values());
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Sets the occupancy of a slot held by this store. Returns {@code false}
+     * when the slot already had that state.
+     */
+    public boolean setOccupied(ParkingSlot slot, boolean occupied) {
+        synchronized (slot) {
+            if (slot.getOccupied() == occupied) {
+                return false;
+            }
+            slot.setOccupied(occupied);
+            // a slot replaced by put() no longer counts towards its lot
+            if (slotsById.get(slot.getId()) == slot) {
+                adjust(lotIdOf(slot), 0, occupied ? 1 : -1);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Sets the occupancy of each slot and returns the ones that actually changed.
+     */
+    public List<ParkingSlot> setOccupied(Collection<ParkingSlot> slots, boolean occupied) {
+        List<ParkingSlot> changed = new ArrayList<>(slots.size());
+        for (ParkingSlot slot : slots) {
+            if (setOccupied(slot, occupied)) {
+                changed.add(slot);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gives the slot's current occupancy a new version, newer than any seen
+     * so far, written by {@code origin}. Call it when publishing a local change.
+     */
+    public long stamp(ParkingSlot slot, String origin) {
+        Version stamped = versionsById.compute(slot.getId(), (id, held) -> new Version(
+            clock.accumulateAndGet(System.currentTimeMillis(), (last, now) -> Math.max(last + 1, now)), origin));
+        return stamped.clock();
+    }
+
+    /**
+     * Applies an occupancy written elsewhere if its version is newer than the
+     * slot's; equal clocks are ordered by origin. Returns {@code false} when
+     * the change is stale and was ignored.
+     */
+    public boolean setOccupiedIfNewer(ParkingSlot slot, boolean occupied, long version, String origin) {
+        clock.accumulateAndGet(version, Math::max);
+        Version incoming = new Version(version, origin);
+        boolean[] applied = new boolean[1];
+        versionsById.compute(slot.getId(), (id, held) -> {
+            if (held != null && Version.ORDER.compare(incoming, held) <= 0) {
+                return held;
+            }
+            setOccupied(slot, occupied);
+            applied[0] = true;
+            return incoming;
+        });
+        return applied[0];
+    }
+
+    public synchronized void put(ParkingSlot slot) {
+        if (slot == null || slot.getId() == null) {
+            return;
+        }
+        ParkingSlot previous = slotsById.get(slot.getId());
+        if (previous == null) {
+            synchronized (slot) {
+                slotsById.put(slot.getId(), slot);
+                count(slot, 1);
+            }
+        } else {
+            // lock the old instance so a concurrent setOccupied is counted exactly once
+            synchronized (previous) {
+                synchronized (slot) {
+                    slotsById.put(slot.getId(), slot);
+                    count(previous, -1);
+                    count(slot, 1);
+                }
+            }
+            unindexSensor(previous);
+        }
+        indexSensor(slot);
+    }
+
+    public synchronized void remove(Long slotId) {
+        ParkingSlot previous = slotId == null ? null : slotsById.get(slotId);
+        if (previous == null) {
+            return;
+        }
+        synchronized (previous) {
+            slotsById.remove(slotId);
+            count(previous, -1);
+        }
+        versionsById.remove(slotId);
+        unindexSensor(previous);
+    }
+
+    public void removeAll(Collection<ParkingSlot> slots) {
+        for (ParkingSlot slot : slots) {
+            remove(slot.getId());
+        }
+    }
+
+    public void registerLot(Long lotId) {
+        if (lotId != null) {
+            countersByLotId.putIfAbsent(lotId, new LotCounter());
+        }
+    }
+
+    /**
+     * Forgets a lot. Its slots should be removed first.
+     */
+    public void removeLot(Long lotId) {
+        if (lotId != null) {
+            countersByLotId.remove(lotId);
+        }
+    }
+
+    /**
+     * Returns the counts for a lot, or {@code null} when the lot is unknown.
+     */
+    public LotAvailability availability(Long lotId) {
+        LotCounter counter = lotId == null ? null : countersByLotId.get(lotId);
+        return counter == null ? null : counter.snapshot(lotId);
+    }
+
+    public List<LotAvailability> allAvailability() {
+        List<LotAvailability> result = new ArrayList<>(countersByLotId.size());
+        countersByLotId.forEach((lotId, counter) -> result.add(counter.snapshot(lotId)));
+        result.sort(Comparator.comparing(LotAvailability::lotId));
+        return result;
+    }
+
+    private void count(ParkingSlot slot, int sign) {
+        adjust(lotIdOf(slot), sign, slot.getOccupied() ? sign : 0);
+    }
+
+    private void adjust(Long lotId, int totalDelta, int occupiedDelta) {
+        if (lotId == null) {
+            return;
+        }
+        countersByLotId.computeIfAbsent(lotId, id -> new LotCounter()).add(totalDelta, occupiedDelta);
+    }
+
+    private static Long lotIdOf(ParkingSlot slot) {
+        return slot.getParkingLot() == null ? null : slot.getParkingLot().getId();
+    }
+
+    private void indexSensor(ParkingSlot slot) {
+        String sensorId = slot.getSensorId();
+        if (sensorId == null || sensorId.trim().isEmpty()) {
+            return;
+        }
+        slotsBySensorId.compute(sensorId, (key, current) -> {
+            List<ParkingSlot> next = current == null ? new ArrayList<>() : new ArrayList<>(current);
+            next.add(slot);
+            return List.copyOf(next);
+        });
+    }
+
+    private void unindexSensor(ParkingSlot slot) {
+        String sensorId = slot.getSensorId();
+        if (sensorId == null) {
+            return;
+        }
+        slotsBySensorId.computeIfPresent(sensorId, (key, current) -> {
+            List<ParkingSlot> next = new ArrayList<>(current);
+            next.removeIf(existing -> existing.getId().equals(slot.getId()));
+            return next.isEmpty() ? null : List.copyOf(next);
+        });
+    }
+
+    private record Version(long clock, String origin) {
+        static final Comparator<Version> ORDER = Comparator.comparingLong(Version::clock)
+            .thenComparing(Version::origin, Comparator.nullsFirst(Comparator.naturalOrder()));
+    }
+
+    /**
+     * Total and occupied counts packed into one long (total in the high half),
+     * so a reader never sees one updated without the other.
+     */
+    private static final class LotCounter {
+        private final AtomicLong packed = new AtomicLong();
+
+        void add(int totalDelta, int occupiedDelta) {
+            packed.addAndGet(((long) totalDelta << 32) + occupiedDelta);
+        }
+
+        LotAvailability snapshot(Long lotId) {
+            long value = packed.get();
+            int total = (int) (value >> 32);
+            int occupied = (int) value;
+            return new LotAvailability(lotId, total, occupied, total - occupied);
+        }
+    }
+}
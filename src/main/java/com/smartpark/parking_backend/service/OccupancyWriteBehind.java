@@ -0,0 +1,161 @@
+package com.smartpark.parking_backend.service;
+
+import com.smartpark.parking_backend.config.WriteBehindProperties;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.repository.ParkingSlotRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind buffer for occupancy changes. Changed slots are only marked
+ * dirty; a timer (or a full buffer) writes their current state from the
+ * {@link OccupancyStore} in bulk updates. A slot that flips ten times between
+ * two flushes is written once, with its last state.
+ *
+ * <p>Spring destroys beans in reverse dependency order, so by the time
+ * {@link #shutdown()} runs, {@code MqttService} has disconnected and the ingest
+ * pipeline has drained into the store; the final flush then writes everything.
+ */
+@Component
+public class OccupancyWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(OccupancyWriteBehind.class);
+
+    private final ParkingSlotRepository parkingSlotRepository;
+    private final OccupancyStore occupancyStore;
+    private final WriteBehindProperties properties;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    public OccupancyWriteBehind(
+        ParkingSlotRepository parkingSlotRepository,
+        OccupancyStore occupancyStore,
+        WriteBehindProperties properties
+    ) {
+        this.parkingSlotRepository = parkingSlotRepository;
+        this.occupancyStore = occupancyStore;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, properties.getFlushIntervalMs());
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int written = flush();
+        logger.info("Write-behind drained on shutdown, {} slot(s) written", written);
+    }
+
+    public void markDirty(Collection<ParkingSlot> slots) {
+        if (slots.isEmpty()) {
+            return;
+        }
+        for (ParkingSlot slot : slots) {
+            dirty.add(slot.getId());
+        }
+        if (scheduler == null) {
+            flush();
+            return;
+        }
+        if (dirty.size() >= properties.getBatchSize() && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    public int pendingCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Writes the current state of every dirty slot. Returns the number of slots written.
+     */
+    public synchronized int flush() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        List<Long> taken = new ArrayList<>();
+        List<Long> occupied = new ArrayList<>();
+        List<Long> free = new ArrayList<>();
+        for (Long slotId : dirty) {
+            if (!dirty.remove(slotId)) {
+                continue;
+            }
+            taken.add(slotId);
+            ParkingSlot slot = occupancyStore.get(slotId);
+            if (slot == null) {
+                continue; // deleted since it was marked
+            }
+            (slot.getOccupied() ? occupied : free).add(slotId);
+        }
+        try {
+            writeInBatches(occupied, true);
+            writeInBatches(free, false);
+        } catch (RuntimeException e) {
+            // keep them dirty; the next flush writes whatever state they have by then
+            dirty.addAll(taken);
+            throw e;
+        }
+        return occupied.size() + free.size();
+    }
+
+    private void writeInBatches(List<Long> slotIds, boolean isOccupied) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (int from = 0; from < slotIds.size(); from += batchSize) {
+            List<Long> chunk = slotIds.subList(from, Math.min(from + batchSize, slotIds.size()));
+            parkingSlotRepository.updateOccupancy(chunk, isOccupied);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            int written = flush();
+            if (written > 0) {
+                logger.debug("Write-behind flushed {} slot(s)", written);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Write-behind flush failed, will retry", e);
+        }
+    }
+}
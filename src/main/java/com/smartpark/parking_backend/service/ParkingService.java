@@ -1,48 +1,228 @@
 package com.smartpark.parking_backend.service;
 
+import com.smartpark.parking_backend.bus.SlotChange;
+import com.smartpark.parking_backend.bus.SlotUpdateBus;
+import com.smartpark.parking_backend.dto.LotAvailability;
+import com.smartpark.parking_backend.dto.LotView;
+import com.smartpark.parking_backend.dto.NearbyLot;
+import com.smartpark.parking_backend.dto.SlotPage;
+import com.smartpark.parking_backend.dto.SlotView;
 import com.smartpark.parking_backend.model.ParkingLot;
 import com.smartpark.parking_backend.model.ParkingSlot;
 import com.smartpark.parking_backend.repository.ParkingLotRepository;
 import com.smartpark.parking_backend.repository.ParkingSlotRepository;
 import com.smartpark.parking_backend.websocket.SlotWebSocketPublisher;
+import jakarta.annotation.PostConstruct;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ParkingService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // bumped after every change to lots or slots; seeded from the clock so a
+    // version (and the ETag built from it) is never reused after a restart
+    private final AtomicLong dataVersion = new AtomicLong(System.currentTimeMillis() * 1000);
+
     private final ParkingSlotRepository parkingSlotRepository;
     private final ParkingLotRepository parkingLotRepository;
     private final SlotWebSocketPublisher slotWebSocketPublisher;
+    private final OccupancyStore occupancyStore;
+    private final OccupancyWriteBehind occupancyWriteBehind;
+    private final LotSpatialIndex lotSpatialIndex;
+    private final SlotUpdateBus slotUpdateBus;
+
+    // tags the slot changes this instance puts on the bus
+    private final String instanceId = UUID.randomUUID().toString();
 
     public ParkingService(
         ParkingSlotRepository parkingSlotRepository,
         ParkingLotRepository parkingLotRepository,
-        SlotWebSocketPublisher slotWebSocketPublisher
+        SlotWebSocketPublisher slotWebSocketPublisher,
+        OccupancyStore occupancyStore,
+        OccupancyWriteBehind occupancyWriteBehind,
+        LotSpatialIndex lotSpatialIndex,
+        SlotUpdateBus slotUpdateBus
     ){
         this.parkingLotRepository =parkingLotRepository;
         this.parkingSlotRepository =parkingSlotRepository;
         this.slotWebSocketPublisher = slotWebSocketPublisher;
+        this.occupancyStore = occupancyStore;
+        this.occupancyWriteBehind = occupancyWriteBehind;
+        this.lotSpatialIndex = lotSpatialIndex;
+        this.slotUpdateBus = slotUpdateBus;
+    }
+
+    @PostConstruct
+    public void subscribeToSlotChanges() {
+        slotUpdateBus.subscribe(instanceId, this::onSlotChange);
     }
 
 
     //Lot Management Services
-    public List<ParkingLot> getAllLots(){
-        return parkingLotRepository.findAll();
+    /**
+     * Every lot as a flat view. With {@code withSlots} each lot also carries its
+     * slots, taken from the occupancy store so their state is current.
+     */
+    public List<LotView> getAllLotViews(boolean withSlots){
+        List<LotView> lots = parkingLotRepository.findAllViews();
+        if (!withSlots) {
+            return lots;
         }
+        Map<Long, List<SlotView>> slotsByLot = new HashMap<>();
+        for (SlotView slot : getAllSlotViews()) {
+            slotsByLot.computeIfAbsent(slot.lotId(), id -> new ArrayList<>()).add(slot);
+        }
+        List<LotView> result = new ArrayList<>(lots.size());
+        for (LotView lot : lots) {
+            result.add(lot.withSlots(slotsByLot.getOrDefault(lot.id(), List.of())));
+        }
+        return result;
+    }
+
     public ParkingLot createParkingLot(ParkingLot lot){
-        return parkingLotRepository.save(lot); // iwill use this to create AND update lots
+        ParkingLot saved = parkingLotRepository.save(lot); // iwill use this to create AND update lots
+        if (saved == null) {
+            dataChanged();
+            return null;
+        }
+        occupancyStore.registerLot(saved.getId());
+        lotSpatialIndex.put(saved);
+        List<ParkingSlot> slots = saved.getParkingSlots() == null ? List.of() : saved.getParkingSlots();
+        slots.forEach(occupancyStore::put);
+        dataChanged();
+        publishChanges(slots, List.of(), List.of(saved), List.of());
+        return saved;
     }
     public void deleteParkingLot(Long id){
+        List<ParkingSlot> removed = parkingSlotRepository.findAllByParkingLotId(id);
         parkingLotRepository.deleteById(id);
-        slotWebSocketPublisher.broadcastSlots(getAllSlots());
+        occupancyStore.removeAll(removed);
+        occupancyStore.removeLot(id);
+        lotSpatialIndex.remove(id);
+        dataChanged();
+        publishChanges(List.of(), removed, List.of(), List.of(id));
+    }
+
+    // availability comes from the store's per-lot counters, no slot is loaded
+    public LotAvailability getLotAvailability(Long lotId){
+        LotAvailability availability = occupancyStore.availability(lotId);
+        if (availability == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Lot not found");
+        }
+        return availability;
+    }
+
+    public List<LotAvailability> getAllLotAvailability(){
+        return occupancyStore.allAvailability();
+    }
+
+    /**
+     * Lots within {@code radiusMeters} of the point with at least {@code minFree}
+     * free slots, nearest first.
+     */
+    public List<NearbyLot> findNearbyLots(double latitude, double longitude, double radiusMeters, int minFree){
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates");
+        }
+        if (radiusMeters <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Radius must be positive");
+        }
+        List<NearbyLot> result = new ArrayList<>();
+        for (LotSpatialIndex.Hit hit : lotSpatialIndex.within(latitude, longitude, radiusMeters)) {
+            LotSpatialIndex.Location location = hit.location();
+            LotAvailability availability = occupancyStore.availability(location.lotId());
+            int total = availability == null ? 0 : availability.total();
+            int free = availability == null ? 0 : availability.free();
+            if (free < minFree) {
+                continue;
+            }
+            result.add(new NearbyLot(location.lotId(), location.name(), location.address(),
+                location.latitude(), location.longitude(), hit.distanceMeters(), total, free));
+        }
+        return result;
     }
 
     //slot management services
-    public List <ParkingSlot> getAllSlots(){
-        return parkingSlotRepository.findAll();
+    // served from the occupancy store, which holds every slot with its latest state
+    public List<SlotView> getAllSlotViews(){
+        List<SlotView> views = new ArrayList<>(occupancyStore.size());
+        for (ParkingSlot slot : occupancyStore.allSlots()) {
+            views.add(SlotView.of(slot));
+        }
+        views.sort(Comparator.comparing(SlotView::id));
+        return views;
+    }
+
+    /**
+     * One keyset page of slots matching the filters, in id order. Without an
+     * occupancy filter rows come from an indexed query and their occupancy is
+     * then taken from the store, which can be one write-behind flush ahead of
+     * the database. With one, the page is cut from the store itself, since
+     * filtering on the lagging column would skip slots that already match.
+     */
+    public SlotPage getSlotPage(Long lotId, Boolean occupied, String sensorId, Long after, int limit){
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        long afterId = after == null ? Long.MIN_VALUE : after;
+        if (occupied != null) {
+            return page(storeSlots(lotId, occupied, sensorId, afterId, limit + 1), limit);
+        }
+        List<SlotView> rows = parkingSlotRepository.findViews(lotId, sensorId, afterId, limit + 1);
+        List<SlotView> slots = new ArrayList<>(rows.size());
+        for (SlotView row : rows) {
+            ParkingSlot held = occupancyStore.get(row.id());
+            slots.add(held == null || held.getOccupied() == row.occupied()
+                ? row
+                : new SlotView(row.id(), row.lotId(), row.number(), held.getOccupied()));
+        }
+        return page(slots, limit);
+    }
+
+    // the first count matching slots after afterId, in id order
+    private List<SlotView> storeSlots(Long lotId, boolean occupied, String sensorId, long afterId, int count) {
+        PriorityQueue<SlotView> lowest = new PriorityQueue<>(count + 1, Comparator.comparing(SlotView::id).reversed());
+        for (ParkingSlot slot : occupancyStore.allSlots()) {
+            if (slot.getId() == null || slot.getId() <= afterId
+                || (sensorId != null && !sensorId.equals(slot.getSensorId()))) {
+                continue;
+            }
+            SlotView view = SlotView.of(slot);
+            if (view.occupied() != occupied || (lotId != null && !lotId.equals(view.lotId()))) {
+                continue;
+            }
+            lowest.add(view);
+            if (lowest.size() > count) {
+                lowest.poll();
+            }
+        }
+        List<SlotView> slots = new ArrayList<>(lowest);
+        slots.sort(Comparator.comparing(SlotView::id));
+        return slots;
+    }
+
+    // rows holds up to limit + 1 slots; the extra one only signals a next page
+    private static SlotPage page(List<SlotView> rows, int limit) {
+        if (rows.size() <= limit) {
+            return new SlotPage(rows, null);
+        }
+        List<SlotView> slots = rows.subList(0, limit);
+        return new SlotPage(slots, slots.get(limit - 1).id());
     }
 
     //i love this function's name addSlotToLot. goofy ahh 
@@ -50,14 +230,36 @@ public class ParkingService {
         ParkingLot lot = parkingLotRepository.findById(lotId).orElseThrow(() -> new RuntimeException("Lot not found"));
         slot.setParkingLot(lot);
         ParkingSlot saved = parkingSlotRepository.save(slot);
-        slotWebSocketPublisher.broadcastSlots(getAllSlots());
+        occupancyStore.put(saved);
+        dataChanged();
+        publishChanges(List.of(saved), List.of());
         return saved;
 
     }
 
+    /**
+     * Adds many slots to a lot in one go: one batched insert and a single
+     * broadcast for all of them.
+     */
+    public List<ParkingSlot> addSlotsToLot(long lotId, List<ParkingSlot> slots){
+        ParkingLot lot = parkingLotRepository.findById(lotId).orElseThrow(() -> new RuntimeException("Lot not found"));
+        if (slots.isEmpty()) {
+            return List.of();
+        }
+        slots.forEach(slot -> slot.setParkingLot(lot));
+        List<ParkingSlot> saved = parkingSlotRepository.saveAll(slots);
+        saved.forEach(occupancyStore::put);
+        dataChanged();
+        publishChanges(saved, List.of());
+        return saved;
+    }
+
     public void deleteSlot(Long SlotId){
+        Optional<ParkingSlot> removed = parkingSlotRepository.findById(SlotId);
         parkingSlotRepository.deleteById(SlotId);
-        slotWebSocketPublisher.broadcastSlots(getAllSlots());
+        occupancyStore.remove(SlotId);
+        dataChanged();
+        removed.ifPresent(slot -> publishChanges(List.of(), List.of(slot)));
     }
 
     public ParkingSlot updateSLotDetails(Long slotId, ParkingSlot newDetails){
@@ -65,8 +267,11 @@ public class ParkingService {
         .map(existingSlot->{
             existingSlot.setSlotNumber(newDetails.getSlotNumber());
             existingSlot.setSensorId(newDetails.getSensorId());
+            existingSlot.setOccupied(current(existingSlot).getOccupied());
             ParkingSlot saved = parkingSlotRepository.save(existingSlot);
-            slotWebSocketPublisher.broadcastSlots(getAllSlots());
+            occupancyStore.put(saved);
+            dataChanged();
+            publishChanges(List.of(saved), List.of());
             return saved;
         })
         .orElseThrow(()->new RuntimeException("Slot not found"));
@@ -74,45 +279,159 @@ public class ParkingService {
 
     //more operations for admins
     public Optional <ParkingSlot> getSlotById(Long id){
-        return parkingSlotRepository.findById(id);
+        return parkingSlotRepository.findById(id).map(this::current);
     }
 
     public ParkingSlot updateSlotStatus(Long slotId,boolean isOccupied){
         ParkingSlot slot = parkingSlotRepository.findById(slotId).orElseThrow(() -> new RuntimeException("Slot not Found"));
         slot.setOccupied(isOccupied);
         ParkingSlot saved = parkingSlotRepository.save(slot);
-        slotWebSocketPublisher.broadcastSlots(getAllSlots());
+        occupancyStore.put(saved);
+        dataChanged();
+        publishChanges(List.of(saved), List.of());
         return saved;
     }
 
+    // sensor paths below work on the occupancy store and only write changed slots
+
     public int updateSlotsStatusBySensorId(String sensorId, boolean isOccupied) {
         if (sensorId == null || sensorId.trim().isEmpty()) {
             return 0;
         }
-        List<ParkingSlot> slots = parkingSlotRepository.findAllBySensorId(sensorId);
+        List<ParkingSlot> slots = occupancyStore.slotsForSensor(sensorId);
         if (slots.isEmpty()) {
             return 0;
         }
-        for (ParkingSlot slot : slots) {
-            slot.setOccupied(isOccupied);
+        List<ParkingSlot> changed = occupancyStore.setOccupied(slots, isOccupied);
+        if (!changed.isEmpty()) {
+            dataChanged();
         }
-        parkingSlotRepository.saveAll(slots);
-        slotWebSocketPublisher.broadcastSlots(getAllSlots());
+        occupancyWriteBehind.markDirty(changed);
+        publishChanges(changed, List.of());
         return slots.size();
     }
 
+    /**
+     * Batch form of {@link #updateSlotsStatusBySensorId}: one write-behind hand-off
+     * and one broadcast for the whole map. Returns the sensor ids that
+     * matched a slot.
+     */
+    public Set<String> updateSlotsStatusBySensorIds(Map<String, Boolean> statusBySensorId) {
+        if (statusBySensorId.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> matched = new HashSet<>();
+        List<ParkingSlot> changed = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : statusBySensorId.entrySet()) {
+            List<ParkingSlot> slots = occupancyStore.slotsForSensor(entry.getKey());
+            if (slots.isEmpty()) {
+                continue;
+            }
+            matched.add(entry.getKey());
+            changed.addAll(occupancyStore.setOccupied(slots, entry.getValue()));
+        }
+        if (!changed.isEmpty()) {
+            dataChanged();
+        }
+        occupancyWriteBehind.markDirty(changed);
+        publishChanges(changed, List.of());
+        return matched;
+    }
+
     public int updateSlotStatusBySlotIdUsingSensor(Long slotId, boolean isOccupied) {
-        ParkingSlot slot = parkingSlotRepository.findById(slotId)
-            .orElseThrow(() -> new RuntimeException("Slot not Found"));
+        ParkingSlot slot = occupancyStore.get(slotId);
+        if (slot == null) {
+            throw new RuntimeException("Slot not Found");
+        }
         String sensorId = slot.getSensorId();
         if (sensorId != null && !sensorId.trim().isEmpty()) {
             return updateSlotsStatusBySensorId(sensorId, isOccupied);
         }
-        slot.setOccupied(isOccupied);
-        parkingSlotRepository.save(slot);
-        slotWebSocketPublisher.broadcastSlots(getAllSlots());
+        if (occupancyStore.setOccupied(slot, isOccupied)) {
+            dataChanged();
+            occupancyWriteBehind.markDirty(List.of(slot));
+            publishChanges(List.of(slot), List.of());
+        }
         return 1;
     }
 
-      
+    /**
+     * Version of the lot and slot data. Read it before reading the data it
+     * should describe, so a response is never tagged newer than its content.
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    private void dataChanged() {
+        dataVersion.incrementAndGet();
+    }
+
+    private void publishChanges(List<ParkingSlot> upserts, List<ParkingSlot> removed) {
+        publishChanges(upserts, removed, List.of(), List.of());
+    }
+
+    // local clients hear about our own changes right away, other instances through the bus
+    private void publishChanges(List<ParkingSlot> upserts, List<ParkingSlot> removed,
+                                List<ParkingLot> lots, List<Long> removedLots) {
+        slotWebSocketPublisher.broadcastChanges(upserts, removed);
+        if (!upserts.isEmpty() || !removed.isEmpty() || !lots.isEmpty() || !removedLots.isEmpty()) {
+            slotUpdateBus.publish(SlotChange.of(instanceId, upserts, removed, lots, removedLots,
+                slot -> occupancyStore.stamp(slot, instanceId)));
+        }
+    }
+
+    /**
+     * Applies a slot change made by another instance to the occupancy store
+     * and passes it on to this instance's WebSocket clients. Slots whose lot,
+     * number or sensor changed, or that are new here, are reloaded from the
+     * shared database; the occupancy in the change wins over the stored one,
+     * which may not be flushed yet. An occupancy older than the one held here
+     * is skipped, so crossed changes settle on the same state everywhere.
+     * Created or moved lots are counted and indexed before their slots land;
+     * deleted ones are dropped after their slots are gone.
+     */
+    void onSlotChange(SlotChange change) {
+        for (SlotChange.LotState lot : change.lots()) {
+            occupancyStore.registerLot(lot.id());
+            lotSpatialIndex.put(lot.id(), lot.name(), lot.address(), lot.latitude(), lot.longitude());
+        }
+        List<ParkingSlot> upserts = new ArrayList<>(change.upserts().size());
+        for (SlotChange.SlotState state : change.upserts()) {
+            ParkingSlot held = occupancyStore.get(state.id());
+            boolean reloaded = held == null || !state.sameSlot(held);
+            if (reloaded) {
+                held = parkingSlotRepository.findById(state.id()).orElse(null);
+                if (held == null) {
+                    continue;
+                }
+                occupancyStore.put(held);
+            }
+            if (occupancyStore.setOccupiedIfNewer(held, state.occupied(), state.version(), change.origin()) || reloaded) {
+                upserts.add(held);
+            }
+        }
+        List<ParkingSlot> removed = new ArrayList<>(change.removed().size());
+        for (SlotChange.SlotState state : change.removed()) {
+            ParkingSlot held = occupancyStore.get(state.id());
+            if (held != null) {
+                occupancyStore.remove(state.id());
+                removed.add(held);
+            }
+        }
+        for (Long lotId : change.removedLots()) {
+            occupancyStore.removeLot(lotId);
+            lotSpatialIndex.remove(lotId);
+        }
+        if (upserts.isEmpty() && removed.isEmpty() && change.lots().isEmpty() && change.removedLots().isEmpty()) {
+            return;
+        }
+        dataChanged();
+        slotWebSocketPublisher.broadcastChanges(upserts, removed);
+    }
+
+    private ParkingSlot current(ParkingSlot slot) {
+        ParkingSlot held = occupancyStore.get(slot.getId());
+        return held != null ? held : slot;
+    }
 }
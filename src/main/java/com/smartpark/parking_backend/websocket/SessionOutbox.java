@@ -0,0 +1,297 @@
+package com.smartpark.parking_backend.websocket;
+
+import com.smartpark.parking_backend.codec.SlotCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Bounded send buffer of one WebSocket session. Broadcasts only append to it;
+ * a sender thread drains it, at most one at a time per session, so frames stay
+ * in order and a session is never written from two threads.
+ *
+ * <p>When the buffer holds more than the size limit, or its oldest frame has
+ * waited longer than the time limit, the session overflows:
+ * <ul>
+ *   <li>{@link Overflow#DROP} closes it with {@code SESSION_NOT_RELIABLE}</li>
+ *   <li>{@link Overflow#SNAPSHOT} discards the backlog and sends one fresh
+ *       snapshot once the client catches up, then resumes with deltas</li>
+ * </ul>
+ * A single send blocked longer than the time limit always closes the session,
+ * since a stuck socket would otherwise hold a sender thread forever. The
+ * publisher checks for that periodically, as a stuck session may never get
+ * another frame to notice it on, and the close runs on its own executor so
+ * it never waits behind the very sends it is meant to unblock.
+ */
+final class SessionOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutbox.class);
+
+    enum Overflow {
+        DROP, SNAPSHOT;
+
+        static Overflow parse(String value) {
+            return value != null && value.trim().toLowerCase(Locale.ROOT).equals("drop") ? DROP : SNAPSHOT;
+        }
+    }
+
+    /**
+     * An encoded frame and the version it brings the client to.
+     */
+    record Frame(long version, WebSocketMessage<?> message, boolean snapshot) {
+    }
+
+    private record Queued(Frame frame, long enqueuedAt) {
+    }
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final Executor closeExecutor;
+    private final SlotCodec codec;
+    private final Function<SessionOutbox, Frame> snapshotSource;
+    private final Runnable onClosed;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimitNanos;
+    private final Overflow overflow;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+    private int bufferedBytes;
+    private boolean resync;
+    private boolean draining;
+    private boolean closed;
+
+    private volatile long sendStartedAt;
+    // lot ids this session follows, null for all lots
+    private volatile Set<Long> lots;
+    // only touched by the draining thread
+    private long coveredVersion = -1;
+
+    SessionOutbox(
+        WebSocketSession session,
+        Executor executor,
+        Executor closeExecutor,
+        SlotCodec codec,
+        Function<SessionOutbox, Frame> snapshotSource,
+        Runnable onClosed,
+        int bufferSizeLimit,
+        long sendTimeLimitMs,
+        Overflow overflow
+    ) {
+        this.session = session;
+        this.executor = executor;
+        this.closeExecutor = closeExecutor;
+        this.codec = codec;
+        this.snapshotSource = snapshotSource;
+        this.onClosed = onClosed;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitNanos = sendTimeLimitMs * 1_000_000L;
+        this.overflow = overflow;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    SlotCodec codec() {
+        return codec;
+    }
+
+    Set<Long> lots() {
+        return lots;
+    }
+
+    void setLots(Set<Long> lots) {
+        this.lots = lots;
+    }
+
+    void enqueue(Frame frame) {
+        boolean evict = false;
+        boolean schedule = false;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            long now = System.nanoTime();
+            long started = sendStartedAt;
+            if (started != 0 && now - started > sendTimeLimitNanos) {
+                evict = true;
+            } else if (!resync) {
+                // while a resync is pending the coming snapshot covers this frame
+                queue.add(new Queued(frame, now));
+                bufferedBytes += frame.message().getPayloadLength();
+                if (bufferedBytes > bufferSizeLimit || now - queue.peek().enqueuedAt() > sendTimeLimitNanos) {
+                    if (overflow == Overflow.DROP) {
+                        evict = true;
+                    } else {
+                        queue.clear();
+                        bufferedBytes = 0;
+                        resync = true;
+                        logger.debug("Session {} fell behind, switching to snapshot resync", session.getId());
+                    }
+                }
+            }
+            if (evict) {
+                closed = true;
+                queue.clear();
+                bufferedBytes = 0;
+            } else if (!draining) {
+                draining = true;
+                schedule = true;
+            }
+        }
+        if (evict) {
+            evict();
+        } else if (schedule) {
+            execute(this::drain);
+        }
+    }
+
+    /**
+     * Closes the session when its current send has been blocked for longer
+     * than the time limit. Closing the socket fails the blocked write, which
+     * frees the sender thread.
+     */
+    void evictIfStalled(long now) {
+        synchronized (lock) {
+            long started = sendStartedAt;
+            if (closed || started == 0 || now - started <= sendTimeLimitNanos) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            bufferedBytes = 0;
+        }
+        evict();
+    }
+
+    /**
+     * Stops sending; frames still queued are dropped.
+     */
+    void discard() {
+        synchronized (lock) {
+            closed = true;
+            queue.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    int bufferedBytes() {
+        synchronized (lock) {
+            return bufferedBytes;
+        }
+    }
+
+    // overflowed in snapshot mode and the resync snapshot has not been taken yet
+    boolean resyncPending() {
+        synchronized (lock) {
+            return resync;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Frame next;
+            synchronized (lock) {
+                if (closed) {
+                    draining = false;
+                    return;
+                }
+                if (resync) {
+                    resync = false;
+                    next = null;
+                } else {
+                    Queued queued = queue.poll();
+                    if (queued == null) {
+                        draining = false;
+                        return;
+                    }
+                    bufferedBytes -= queued.frame().message().getPayloadLength();
+                    next = queued.frame();
+                }
+            }
+            if (next == null) {
+                next = snapshotSource.apply(this);
+                if (next == null) {
+                    continue;
+                }
+            }
+            if (!next.snapshot() && next.version() <= coveredVersion) {
+                continue; // already part of the last snapshot this client got
+            }
+            if (!send(next)) {
+                return;
+            }
+            if (next.snapshot()) {
+                coveredVersion = next.version();
+            }
+        }
+    }
+
+    private boolean send(Frame frame) {
+        if (!session.isOpen()) {
+            fail();
+            return false;
+        }
+        sendStartedAt = Math.max(1, System.nanoTime());
+        try {
+            session.sendMessage(frame.message());
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            logger.debug("Send to session {} failed: {}", session.getId(), ex.getMessage());
+            fail();
+            return false;
+        } finally {
+            sendStartedAt = 0;
+        }
+    }
+
+    private void fail() {
+        synchronized (lock) {
+            closed = true;
+            draining = false;
+            queue.clear();
+            bufferedBytes = 0;
+        }
+        onClosed.run();
+    }
+
+    private void evict() {
+        logger.info("Closing slow WebSocket session {}", session.getId());
+        onClosed.run();
+        try {
+            closeExecutor.execute(() -> closeQuietly(CloseStatus.SESSION_NOT_RELIABLE));
+        } catch (RejectedExecutionException ex) {
+            logger.debug("Not closing session {} during shutdown", session.getId());
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            synchronized (lock) {
+                draining = false;
+            }
+            logger.debug("Dropping WebSocket send during shutdown");
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException | RuntimeException ex) {
+            logger.debug("Closing session {} failed: {}", session.getId(), ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.smartpark.parking_backend.websocket;
+
+import com.smartpark.parking_backend.model.ParkingSlot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ring buffer of the last published deltas, indexed by version. Versions are
+ * handed out one by one, so the change for version {@code v} sits at
+ * {@code v % capacity} and the buffer covers a contiguous range ending at the
+ * latest version. A reconnecting client inside that range gets the missed
+ * changes merged into one delta instead of a full snapshot.
+ */
+final class SlotChangeLog {
+
+    private record Change(long version, List<ParkingSlot> upserts, List<ParkingSlot> removed) {
+    }
+
+    private final Change[] changes;
+
+    SlotChangeLog(int capacity) {
+        this.changes = new Change[Math.max(0, capacity)];
+    }
+
+    synchronized void append(long version, Collection<ParkingSlot> upserts, Collection<ParkingSlot> removed) {
+        if (changes.length == 0) {
+            return;
+        }
+        changes[index(version)] = new Change(version, List.copyOf(upserts), List.copyOf(removed));
+    }
+
+    /**
+     * Merges every change after {@code since} up to {@code current} into one
+     * delta at {@code current}, limited to the given lots ({@code null} for
+     * all). Returns {@code null} when part of that range has been evicted or
+     * {@code since} does not belong to this server's history.
+     */
+    synchronized SlotUpdateMessage since(long since, long current, Set<Long> lots) {
+        if (since > current || current - since > changes.length) {
+            return null;
+        }
+        Map<Long, ParkingSlot> upserts = new LinkedHashMap<>();
+        Map<Long, ParkingSlot> removed = new LinkedHashMap<>();
+        for (long next = since + 1; next <= current; next++) {
+            Change change = changes[index(next)];
+            if (change == null || change.version() != next) {
+                return null;
+            }
+            for (ParkingSlot slot : change.upserts()) {
+                removed.remove(slot.getId());
+                upserts.put(slot.getId(), slot);
+            }
+            for (ParkingSlot slot : change.removed()) {
+                upserts.remove(slot.getId());
+                removed.put(slot.getId(), slot);
+            }
+        }
+        List<Long> removedIds = new ArrayList<>();
+        for (ParkingSlot slot : SlotWebSocketPublisher.inLots(removed.values(), lots)) {
+            removedIds.add(slot.getId());
+        }
+        return SlotUpdateMessage.delta(current, SlotWebSocketPublisher.inLots(upserts.values(), lots), removedIds);
+    }
+
+    private int index(long version) {
+        return (int) Math.floorMod(version, (long) changes.length);
+    }
+}
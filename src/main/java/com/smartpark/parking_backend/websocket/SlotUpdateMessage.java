@@ -1,7 +1,47 @@
 package com.smartpark.parking_backend.websocket;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.smartpark.parking_backend.dto.SlotView;
 import com.smartpark.parking_backend.model.ParkingSlot;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
-public record SlotUpdateMessage(String type, List<ParkingSlot> slots) {
+/**
+ * Frame sent on {@code /ws/slots}. A {@code "slots"} frame is a full snapshot and
+ * is only sent when a client connects; every later change arrives as a
+ * {@code "delta"} frame with the changed slots in {@code slots} and the ids of
+ * deleted slots in {@code removed}. Clients apply deltas whose {@code version}
+ * is greater than the one of their snapshot. Slots are sent as {@link SlotView}s.
+ *
+ * <p>Snapshots also carry the {@code epoch} of the server that numbered the
+ * versions. Versions are only comparable within one epoch, so a client needs
+ * both to resume.
+ */
+public record SlotUpdateMessage(
+    String type,
+    long version,
+    @JsonInclude(JsonInclude.Include.NON_NULL) String epoch,
+    List<SlotView> slots,
+    List<Long> removed
+) {
+
+    public static final String SNAPSHOT = "slots";
+    public static final String DELTA = "delta";
+
+    public static SlotUpdateMessage snapshot(String epoch, long version, Collection<ParkingSlot> slots) {
+        return new SlotUpdateMessage(SNAPSHOT, version, epoch, views(slots), List.of());
+    }
+
+    public static SlotUpdateMessage delta(long version, Collection<ParkingSlot> upserts, List<Long> removed) {
+        return new SlotUpdateMessage(DELTA, version, null, views(upserts), removed);
+    }
+
+    private static List<SlotView> views(Collection<ParkingSlot> slots) {
+        List<SlotView> views = new ArrayList<>(slots.size());
+        for (ParkingSlot slot : slots) {
+            views.add(SlotView.of(slot));
+        }
+        return views;
+    }
 }
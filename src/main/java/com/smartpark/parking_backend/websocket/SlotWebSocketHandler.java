@@ -1,28 +1,79 @@
 package com.smartpark.parking_backend.websocket;
 
-import com.smartpark.parking_backend.service.ParkingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Clients follow every lot by default. They can narrow that down when
+ * connecting, with {@code /ws/slots/lots/{lotId}} or {@code /ws/slots?lots=1,2},
+ * or later by sending {@code {"type":"subscribe","lots":[1,2]}}. An empty
+ * {@code lots} list goes back to every lot. Each change of subscription is
+ * answered with a snapshot of the followed lots.
+ *
+ * <p>A reconnecting client can add {@code epoch=<epoch of its snapshot>} and
+ * {@code since=<last version seen>} to the URI and only gets what it missed,
+ * as long as it reached the same server and that server still remembers it.
+ */
 @Component
 public class SlotWebSocketHandler extends TextWebSocketHandler {
-    private final ParkingService parkingService;
+    private static final Logger logger = LoggerFactory.getLogger(SlotWebSocketHandler.class);
+
+    static final String LOT_PATH = "/ws/slots/lots/";
+
     private final SlotWebSocketPublisher slotWebSocketPublisher;
+    private final ObjectMapper objectMapper;
 
     public SlotWebSocketHandler(
-        ParkingService parkingService,
-        SlotWebSocketPublisher slotWebSocketPublisher
+        SlotWebSocketPublisher slotWebSocketPublisher,
+        ObjectMapper objectMapper
     ) {
-        this.parkingService = parkingService;
         this.slotWebSocketPublisher = slotWebSocketPublisher;
+        this.objectMapper = objectMapper;
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        slotWebSocketPublisher.register(session);
-        slotWebSocketPublisher.sendSlotsTo(session, parkingService.getAllSlots());
+        URI uri = session.getUri();
+        Long since = sinceFromUri(uri);
+        if (since != null) {
+            slotWebSocketPublisher.registerResuming(session, lotsFromUri(uri), queryParam(uri, "epoch"), since);
+        } else {
+            slotWebSocketPublisher.registerWithSnapshot(session, lotsFromUri(uri));
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (Exception e) {
+            logger.debug("Ignoring malformed message from session {}", session.getId());
+            return;
+        }
+        if (request == null || !"subscribe".equals(request.path("type").asText())) {
+            return;
+        }
+        Set<Long> lots = new LinkedHashSet<>();
+        for (JsonNode lot : request.path("lots")) {
+            if (lot.canConvertToLong()) {
+                lots.add(lot.asLong());
+            }
+        }
+        slotWebSocketPublisher.subscribe(session, lots);
     }
 
     @Override
@@ -34,4 +85,46 @@ public class SlotWebSocketHandler extends TextWebSocketHandler {
     public void handleTransportError(WebSocketSession session, Throwable exception) {
         slotWebSocketPublisher.unregister(session);
     }
+
+    static Set<Long> lotsFromUri(URI uri) {
+        Set<Long> lots = new LinkedHashSet<>();
+        if (uri == null) {
+            return lots;
+        }
+        String path = uri.getPath();
+        if (path != null && path.startsWith(LOT_PATH)) {
+            addLotIds(lots, path.substring(LOT_PATH.length()));
+        }
+        List<String> values = UriComponentsBuilder.fromUri(uri).build().getQueryParams().get("lots");
+        if (values != null) {
+            values.forEach(value -> addLotIds(lots, value));
+        }
+        return lots;
+    }
+
+    static Long sinceFromUri(URI uri) {
+        String value = queryParam(uri, "since");
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String queryParam(URI uri, String name) {
+        return uri == null ? null : UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst(name);
+    }
+
+    private static void addLotIds(Set<Long> lots, String value) {
+        for (String part : value.split(",")) {
+            try {
+                lots.add(Long.parseLong(part.trim()));
+            } catch (NumberFormatException e) {
+                // ignore anything that is not a lot id
+            }
+        }
+    }
 }
@@ -1,53 +1,506 @@
 package com.smartpark.parking_backend.websocket;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartpark.parking_backend.codec.SlotCodec;
+import com.smartpark.parking_backend.codec.SlotCodecs;
+import com.smartpark.parking_backend.config.WebSocketProperties;
 import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.service.OccupancyStore;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 @Component
 public class SlotWebSocketPublisher {
-    private final ObjectMapper objectMapper;
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    private static final Logger logger = LoggerFactory.getLogger(SlotWebSocketPublisher.class);
+    private static final int SNAPSHOT_CACHE_LIMIT = 256;
+    private static final int CLOSER_THREADS = 2;
 
-    public SlotWebSocketPublisher(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    private final SlotCodecs codecs;
+    private final WebSocketProperties properties;
+    private final OccupancyStore occupancyStore;
+    private final SessionOutbox.Overflow overflow;
+
+    private final Map<WebSocketSession, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    // frames are only encoded with the codecs some session uses
+    private final Map<SlotCodec, AtomicInteger> sessionsByCodec = new ConcurrentHashMap<>();
+    // lot -> sessions index; sessions without a lot filter sit in allLotsSubscribers
+    private final Set<SessionOutbox> allLotsSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<SessionOutbox>> subscribersByLot = new ConcurrentHashMap<>();
+    private final Object subscriptionLock = new Object();
+    // seeded from the clock so versions keep growing across restarts
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+    // names this process's version history; versions of another instance or an
+    // earlier run may overlap ours, so a resume is only honoured within one epoch
+    private final String epoch = UUID.randomUUID().toString();
+    private final SlotChangeLog changeLog;
+    // encoded snapshots per codec and followed lot set, valid for snapshotCacheVersion
+    // and snapshotCacheGeneration only
+    private final Object snapshotLock = new Object();
+    private final Map<SnapshotKey, SessionOutbox.Frame> snapshotCache = new HashMap<>();
+    private long snapshotCacheVersion = -1;
+    private long snapshotCacheGeneration = -1;
+    // held while a version is assigned and handed to the dispatcher, so frames leave in version order
+    private final Object broadcastLock = new Object();
+    // one dispatcher keeps frames in order and only appends to the per-session outboxes
+    private final ScheduledExecutorService dispatchExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slot-ws-dispatch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // the actual socket writes; a slow session only ever holds one of these threads,
+    // and for no longer than the send time limit
+    private final ExecutorService sendExecutor;
+    // closes of stuck sessions, kept off the sender pool they would otherwise queue behind;
+    // a burst of them queues here instead of starting a thread each
+    private final ExecutorService closeExecutor;
+
+    // tick mode: changes are collected per slot id and published once per tick
+    private final long tickMs;
+    private final Object pendingLock = new Object();
+    private Map<Long, ParkingSlot> pendingUpserts = new LinkedHashMap<>();
+    private Map<Long, ParkingSlot> pendingRemovals = new LinkedHashMap<>();
+
+    public SlotWebSocketPublisher(SlotCodecs codecs, WebSocketProperties properties, OccupancyStore occupancyStore) {
+        this.codecs = codecs;
+        this.properties = properties;
+        this.occupancyStore = occupancyStore;
+        this.overflow = SessionOutbox.Overflow.parse(properties.getOverflow());
+        this.changeLog = new SlotChangeLog(properties.getResumeBufferSize());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.sendExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getSenderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "slot-ws-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger closerCount = new AtomicInteger();
+        this.closeExecutor = Executors.newFixedThreadPool(CLOSER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "slot-ws-closer-" + closerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long stallCheckMs = Math.max(10, properties.getSendTimeLimitMs() / 2);
+        dispatchExecutor.scheduleWithFixedDelay(this::evictStalledSessions, stallCheckMs, stallCheckMs, TimeUnit.MILLISECONDS);
+        this.tickMs = Math.max(0, properties.getBroadcastTickMs());
+        if (tickMs > 0) {
+            dispatchExecutor.scheduleWithFixedDelay(this::flushTick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void register(WebSocketSession session) {
-        sessions.add(session);
+        register(session, null);
     }
 
-    public void unregister(WebSocketSession session) {
-        sessions.remove(session);
+    /**
+     * Registers a session that only follows the given lots; {@code null} or an
+     * empty set means every lot. Frames use the codec of the negotiated
+     * subprotocol, JSON when there is none. Nothing is sent until the next
+     * change; clients that need a starting point use {@link #registerWithSnapshot}.
+     */
+    public void register(WebSocketSession session, Set<Long> lots) {
+        if (session != null) {
+            subscribe(outboxFor(session), followed(lots));
+        }
     }
 
-    public void sendSlotsTo(WebSocketSession session, List<ParkingSlot> slots) {
-        sendMessage(session, new SlotUpdateMessage("slots", slots));
+    /**
+     * Registers the session like {@link #register(WebSocketSession, Set)} and
+     * queues a snapshot of its lots ahead of any delta it gets.
+     */
+    public void registerWithSnapshot(WebSocketSession session, Set<Long> lots) {
+        if (session != null) {
+            subscribeWithSnapshot(outboxFor(session), followed(lots));
+        }
     }
 
-    public void broadcastSlots(List<ParkingSlot> slots) {
-        SlotUpdateMessage payload = new SlotUpdateMessage("slots", slots);
-        for (WebSocketSession session : sessions) {
-            sendMessage(session, payload);
+    /**
+     * Replaces the lots a registered session follows and queues a snapshot of
+     * the new ones.
+     */
+    public void subscribe(WebSocketSession session, Set<Long> lots) {
+        SessionOutbox outbox = session == null ? null : outboxes.get(session);
+        if (outbox != null) {
+            subscribeWithSnapshot(outbox, followed(lots));
         }
     }
 
-    private void sendMessage(WebSocketSession session, SlotUpdateMessage payload) {
-        if (session == null || !session.isOpen()) {
-            sessions.remove(session);
+    /**
+     * Registers the session like {@link #register(WebSocketSession, Set)} and
+     * queues the changes it missed since {@code since}, merged into one delta
+     * for its lots, ahead of any newer delta. Falls back to a snapshot when
+     * {@code epoch} is not this publisher's, for example after reconnecting to
+     * another instance, or when that version is no longer in the change log.
+     */
+    public void registerResuming(WebSocketSession session, Set<Long> lots, String epoch, long since) {
+        if (session == null) {
             return;
         }
+        SessionOutbox outbox = outboxFor(session);
+        Set<Long> followed = followed(lots);
+        synchronized (broadcastLock) {
+            SlotUpdateMessage missed = this.epoch.equals(epoch)
+                ? changeLog.since(since, version.get(), followed)
+                : null;
+            SessionOutbox.Frame frame = missed != null
+                ? encodeFrame(outbox.codec(), missed.version(), missed, false)
+                : snapshotFrame(outbox.codec(), followed);
+            subscribeThenQueue(outbox, followed, frame);
+        }
+    }
+
+    private SessionOutbox outboxFor(WebSocketSession session) {
+        return outboxes.computeIfAbsent(session, key -> {
+            SlotCodec codec = codecs.forSubprotocol(key.getAcceptedProtocol());
+            sessionsByCodec.computeIfAbsent(codec, c -> new AtomicInteger()).incrementAndGet();
+            return new SessionOutbox(
+                key,
+                sendExecutor,
+                closeExecutor,
+                codec,
+                this::resyncSnapshot,
+                () -> unregister(key),
+                properties.getBufferSizeLimit(),
+                properties.getSendTimeLimitMs(),
+                overflow);
+        });
+    }
+
+    public void unregister(WebSocketSession session) {
+        SessionOutbox outbox = session == null ? null : outboxes.remove(session);
+        if (outbox != null) {
+            outbox.discard();
+            unindex(outbox);
+            sessionsByCodec.get(outbox.codec()).decrementAndGet();
+        }
+    }
+
+    public int sessionCount() {
+        return outboxes.size();
+    }
+
+    SessionOutbox outbox(WebSocketSession session) {
+        return outboxes.get(session);
+    }
+
+    public long currentVersion() {
+        return version.get();
+    }
+
+    public String epoch() {
+        return epoch;
+    }
+
+    /**
+     * Sends only the slots that changed. Without a tick every call with at least
+     * one change is one frame and advances the version, whether or not a client
+     * is connected. With {@code websocket.broadcast.tick-ms} set, changes are
+     * merged per slot and go out as one frame (and one version) per tick.
+     */
+    public void broadcastChanges(Collection<ParkingSlot> upserts, Collection<ParkingSlot> removed) {
+        if (upserts.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        if (tickMs > 0) {
+            collect(upserts, removed);
+            return;
+        }
+        publishChanges(upserts, removed);
+    }
+
+    private void collect(Collection<ParkingSlot> upserts, Collection<ParkingSlot> removed) {
+        synchronized (pendingLock) {
+            for (ParkingSlot slot : upserts) {
+                pendingRemovals.remove(slot.getId());
+                // slots are the store's live instances, so the frame carries their state at flush time
+                pendingUpserts.put(slot.getId(), slot);
+            }
+            for (ParkingSlot slot : removed) {
+                pendingUpserts.remove(slot.getId());
+                pendingRemovals.put(slot.getId(), slot);
+            }
+        }
+    }
+
+    private void flushTick() {
+        Collection<ParkingSlot> upserts;
+        Collection<ParkingSlot> removed;
+        synchronized (pendingLock) {
+            if (pendingUpserts.isEmpty() && pendingRemovals.isEmpty()) {
+                return;
+            }
+            upserts = pendingUpserts.values();
+            removed = pendingRemovals.values();
+            pendingUpserts = new LinkedHashMap<>();
+            pendingRemovals = new LinkedHashMap<>();
+        }
         try {
-            String body = objectMapper.writeValueAsString(payload);
-            session.sendMessage(new TextMessage(body));
+            publishChanges(upserts, removed);
+        } catch (RuntimeException ex) {
+            // an exception would cancel the scheduled tick
+            logger.error("Failed to publish slot tick", ex);
+        }
+    }
+
+    // a session stuck in a send gets no new frame to notice it on, so look for them here
+    private void evictStalledSessions() {
+        try {
+            long now = System.nanoTime();
+            outboxes.values().forEach(outbox -> outbox.evictIfStalled(now));
+        } catch (RuntimeException ex) {
+            // an exception would cancel the scheduled check
+            logger.error("Failed to check for stalled WebSocket sessions", ex);
+        }
+    }
+
+    private void publishChanges(Collection<ParkingSlot> upserts, Collection<ParkingSlot> removed) {
+        synchronized (broadcastLock) {
+            long next = version.incrementAndGet();
+            // logged even with nobody connected, so clients that dropped off can resume
+            changeLog.append(next, upserts, removed);
+            if (outboxes.isEmpty()) {
+                return;
+            }
+            List<Runnable> routes = new ArrayList<>();
+            if (!allLotsSubscribers.isEmpty()) {
+                // serialize once per codec on the caller, then share the frames across all sessions
+                Map<SlotCodec, SessionOutbox.Frame> frames = encodeFrames(next, SlotUpdateMessage.delta(next, upserts, ids(removed)));
+                if (!frames.isEmpty()) {
+                    routes.add(() -> allLotsSubscribers.forEach(outbox -> enqueue(outbox, frames)));
+                }
+            }
+            if (!subscribersByLot.isEmpty()) {
+                // one frame per lot that changed and has followers
+                Map<Long, List<ParkingSlot>> upsertsByLot = groupByFollowedLot(upserts);
+                Map<Long, List<ParkingSlot>> removedByLot = groupByFollowedLot(removed);
+                Set<Long> changedLots = new HashSet<>(upsertsByLot.keySet());
+                changedLots.addAll(removedByLot.keySet());
+                for (Long lotId : changedLots) {
+                    Map<SlotCodec, SessionOutbox.Frame> frames = encodeFrames(next, SlotUpdateMessage.delta(next,
+                        upsertsByLot.getOrDefault(lotId, List.of()),
+                        ids(removedByLot.getOrDefault(lotId, List.of()))));
+                    if (!frames.isEmpty()) {
+                        routes.add(() -> subscribersByLot.getOrDefault(lotId, Set.of()).forEach(outbox -> enqueue(outbox, frames)));
+                    }
+                }
+            }
+            if (!routes.isEmpty()) {
+                dispatch(() -> routes.forEach(Runnable::run));
+            }
+        }
+    }
+
+    private void subscribeWithSnapshot(SessionOutbox outbox, Set<Long> followed) {
+        synchronized (broadcastLock) {
+            subscribeThenQueue(outbox, followed, snapshotFrame(outbox.codec(), followed));
+        }
+    }
+
+    /**
+     * Indexes the session under {@code followed} and queues its first frame as
+     * one dispatcher task; the caller holds the broadcast lock and built the
+     * frame at the current version. The routes of earlier versions run before
+     * it and no longer see the session under these lots; those of later
+     * versions run after it and land behind the frame. Indexing right away
+     * instead would let a route still waiting in the dispatcher put an older
+     * delta ahead of it.
+     */
+    private void subscribeThenQueue(SessionOutbox outbox, Set<Long> followed, SessionOutbox.Frame frame) {
+        dispatch(() -> {
+            subscribe(outbox, followed);
+            if (frame != null) {
+                outbox.enqueue(frame);
+            }
+        });
+    }
+
+    private static Set<Long> followed(Set<Long> lots) {
+        return lots == null || lots.isEmpty() ? null : Set.copyOf(lots);
+    }
+
+    private void subscribe(SessionOutbox outbox, Set<Long> followed) {
+        synchronized (subscriptionLock) {
+            unindex(outbox);
+            outbox.setLots(followed);
+            if (!outboxes.containsKey(outbox.session())) {
+                return; // closed meanwhile
+            }
+            if (followed == null) {
+                allLotsSubscribers.add(outbox);
+                return;
+            }
+            for (Long lotId : followed) {
+                subscribersByLot.computeIfAbsent(lotId, key -> ConcurrentHashMap.newKeySet()).add(outbox);
+            }
+        }
+    }
+
+    private void unindex(SessionOutbox outbox) {
+        synchronized (subscriptionLock) {
+            allLotsSubscribers.remove(outbox);
+            Set<Long> lots = outbox.lots();
+            if (lots == null) {
+                return;
+            }
+            for (Long lotId : lots) {
+                Set<SessionOutbox> followers = subscribersByLot.get(lotId);
+                if (followers != null) {
+                    followers.remove(outbox);
+                    if (followers.isEmpty()) {
+                        subscribersByLot.remove(lotId);
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<Long, List<ParkingSlot>> groupByFollowedLot(Collection<ParkingSlot> slots) {
+        Map<Long, List<ParkingSlot>> byLot = new HashMap<>();
+        for (ParkingSlot slot : slots) {
+            Long lotId = lotIdOf(slot);
+            if (lotId != null && subscribersByLot.containsKey(lotId)) {
+                byLot.computeIfAbsent(lotId, key -> new ArrayList<>()).add(slot);
+            }
+        }
+        return byLot;
+    }
+
+    // used by outboxes that fell behind and need to start over from a full snapshot
+    private SessionOutbox.Frame resyncSnapshot(SessionOutbox outbox) {
+        return snapshotFrame(outbox.codec(), outbox.lots());
+    }
+
+    /**
+     * Returns the snapshot of the given lots at the current version. Encoded
+     * snapshots are cached until the version moves or the store is reloaded
+     * (which happens after seeding, without any slot change), so a burst of connections
+     * costs one store scan and one serialization per distinct lot set. The
+     * store may already hold changes of the next version; they reach the
+     * client again as the delta of that version.
+     */
+    private SessionOutbox.Frame snapshotFrame(SlotCodec codec, Set<Long> lots) {
+        SnapshotKey key = new SnapshotKey(codec, lots);
+        synchronized (snapshotLock) {
+            long current = version.get();
+            long generation = occupancyStore.generation();
+            if (snapshotCacheVersion != current || snapshotCacheGeneration != generation) {
+                snapshotCache.clear();
+                snapshotCacheVersion = current;
+                snapshotCacheGeneration = generation;
+            }
+            SessionOutbox.Frame cached = snapshotCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            List<ParkingSlot> slots = inLots(occupancyStore.allSlots(), lots);
+            slots.sort(Comparator.comparing(ParkingSlot::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+            SessionOutbox.Frame frame = encodeFrame(codec, current, SlotUpdateMessage.snapshot(epoch, current, slots), true);
+            if (frame != null && snapshotCache.size() < SNAPSHOT_CACHE_LIMIT) {
+                snapshotCache.put(key, frame);
+            }
+            return frame;
+        }
+    }
+
+    static List<ParkingSlot> inLots(Collection<ParkingSlot> slots, Set<Long> lots) {
+        if (lots == null || lots.isEmpty()) {
+            return new ArrayList<>(slots);
+        }
+        List<ParkingSlot> result = new ArrayList<>();
+        for (ParkingSlot slot : slots) {
+            Long lotId = lotIdOf(slot);
+            if (lotId != null && lots.contains(lotId)) {
+                result.add(slot);
+            }
+        }
+        return result;
+    }
+
+    private static Long lotIdOf(ParkingSlot slot) {
+        return slot.getParkingLot() == null ? null : slot.getParkingLot().getId();
+    }
+
+    private static List<Long> ids(Collection<ParkingSlot> slots) {
+        List<Long> ids = new ArrayList<>(slots.size());
+        for (ParkingSlot slot : slots) {
+            ids.add(slot.getId());
+        }
+        return ids;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatchExecutor.shutdown();
+        sendExecutor.shutdown();
+        closeExecutor.shutdown();
+    }
+
+    private Map<SlotCodec, SessionOutbox.Frame> encodeFrames(long frameVersion, SlotUpdateMessage payload) {
+        Map<SlotCodec, SessionOutbox.Frame> frames = new HashMap<>();
+        sessionsByCodec.forEach((codec, sessions) -> {
+            if (sessions.get() > 0) {
+                SessionOutbox.Frame frame = encodeFrame(codec, frameVersion, payload, false);
+                if (frame != null) {
+                    frames.put(codec, frame);
+                }
+            }
+        });
+        return frames;
+    }
+
+    private SessionOutbox.Frame encodeFrame(SlotCodec codec, long frameVersion, SlotUpdateMessage payload, boolean snapshot) {
+        try {
+            byte[] bytes = codec.encode(payload);
+            // text frames are built from bytes so the payload is not re-encoded for every session
+            WebSocketMessage<?> message = codec.binary() ? new BinaryMessage(bytes) : new TextMessage(bytes);
+            return new SessionOutbox.Frame(frameVersion, message, snapshot);
         } catch (IOException ex) {
-            sessions.remove(session);
+            logger.error("Failed to serialize slot update", ex);
+            return null;
+        }
+    }
+
+    // a session registered after the frames were encoded is covered by its own snapshot
+    private static void enqueue(SessionOutbox outbox, Map<SlotCodec, SessionOutbox.Frame> frames) {
+        SessionOutbox.Frame frame = frames.get(outbox.codec());
+        if (frame != null) {
+            outbox.enqueue(frame);
+        }
+    }
+
+    private record SnapshotKey(SlotCodec codec, Set<Long> lots) {
+        SnapshotKey {
+            lots = lots == null ? Set.of() : lots;
+        }
+    }
+
+    private void dispatch(Runnable task) {
+        try {
+            dispatchExecutor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            logger.debug("Dropping slot update during shutdown");
         }
     }
 }
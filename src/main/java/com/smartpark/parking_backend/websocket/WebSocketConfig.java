@@ -1,22 +1,64 @@
 package com.smartpark.parking_backend.websocket;
 
+import com.smartpark.parking_backend.codec.SlotCodecs;
+import com.smartpark.parking_backend.config.WebSocketProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
+    private static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     private final SlotWebSocketHandler slotWebSocketHandler;
+    private final SlotCodecs slotCodecs;
+    private final WebSocketProperties webSocketProperties;
 
-    public WebSocketConfig(SlotWebSocketHandler slotWebSocketHandler) {
+    public WebSocketConfig(
+        SlotWebSocketHandler slotWebSocketHandler,
+        SlotCodecs slotCodecs,
+        WebSocketProperties webSocketProperties
+    ) {
         this.slotWebSocketHandler = slotWebSocketHandler;
+        this.slotCodecs = slotCodecs;
+        this.webSocketProperties = webSocketProperties;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(slotWebSocketHandler, "/ws/slots")
+        registry.addHandler(slotWebSocketHandler, "/ws/slots", SlotWebSocketHandler.LOT_PATH + "*")
+            .setHandshakeHandler(handshakeHandler())
             .setAllowedOrigins("*");
     }
+
+    // the servlet container offers permessage-deflate whenever a client asks for it
+    private DefaultHandshakeHandler handshakeHandler() {
+        boolean deflate = webSocketProperties.isPermessageDeflate();
+        DefaultHandshakeHandler handler = new DefaultHandshakeHandler() {
+            @Override
+            protected List<WebSocketExtension> filterRequestedExtensions(
+                ServerHttpRequest request,
+                List<WebSocketExtension> requestedExtensions,
+                List<WebSocketExtension> supportedExtensions
+            ) {
+                List<WebSocketExtension> accepted =
+                    super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+                if (deflate) {
+                    return accepted;
+                }
+                return accepted.stream()
+                    .filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                    .toList();
+            }
+        };
+        handler.setSupportedProtocols(slotCodecs.subprotocols().toArray(String[]::new));
+        return handler;
+    }
 }
@@ -0,0 +1,66 @@
+package com.smartpark.parking_backend.bus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InProcessSlotUpdateBusTest {
+
+    private final SlotChange change = new SlotChange("node-a",
+            List.of(new SlotChange.SlotState(1L, 7L, 1, "sensor-01", true, 1L)), List.of(),
+            List.of(), List.of());
+
+    @Test
+    void publish_shouldDeliverToEverySubscriber() {
+        // Arrange: Two subscribers on one bus
+        InProcessSlotUpdateBus bus = new InProcessSlotUpdateBus();
+        List<SlotChange> first = new ArrayList<>();
+        List<SlotChange> second = new ArrayList<>();
+        bus.subscribe("node-b", first::add);
+        bus.subscribe("node-c", second::add);
+
+        // Act: Publish one change
+        bus.publish(change);
+
+        // Assert: Both see it
+        assertThat(first).containsExactly(change);
+        assertThat(second).containsExactly(change);
+    }
+
+    @Test
+    void publish_shouldKeepDeliveringWhenOneSubscriberFails() {
+        // Arrange: First subscriber throws
+        InProcessSlotUpdateBus bus = new InProcessSlotUpdateBus();
+        List<SlotChange> received = new ArrayList<>();
+        bus.subscribe("node-b", ignored -> {
+            throw new RuntimeException("boom");
+        });
+        bus.subscribe("node-c", received::add);
+
+        // Act: Publish one change
+        bus.publish(change);
+
+        // Assert: The healthy subscriber still gets it
+        assertThat(received).containsExactly(change);
+    }
+
+    @Test
+    void publish_shouldSkipSubscribersOfThePublishingInstance() {
+        // Arrange: The publishing instance listens too, next to another one
+        InProcessSlotUpdateBus bus = new InProcessSlotUpdateBus();
+        List<SlotChange> own = new ArrayList<>();
+        List<SlotChange> other = new ArrayList<>();
+        bus.subscribe("node-a", own::add);
+        bus.subscribe("node-b", other::add);
+
+        // Act: Node A publishes
+        bus.publish(change);
+
+        // Assert: Only the other instance hears it
+        assertThat(own).isEmpty();
+        assertThat(other).containsExactly(change);
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartpark.parking_backend.bus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartpark.parking_backend.config.SlotBusProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class MqttSlotUpdateBusTest {
+
+    @Mock
+    private SlotBusProperties slotBusProperties;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MqttSlotUpdateBus nodeA;
+    private MqttSlotUpdateBus nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new MqttSlotUpdateBus(slotBusProperties, objectMapper);
+        nodeB = new MqttSlotUpdateBus(slotBusProperties, objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void publish_shouldReachSubscribersOnAnotherInstance() throws Exception {
+        // Arrange: Node A's sender feeds node B, as the broker would
+        BlockingQueue<SlotChange> received = new LinkedBlockingQueue<>();
+        nodeB.subscribe("node-b", received::add);
+        nodeA.connect(payload -> nodeB.receive(ByteBuffer.wrap(payload), () -> { }));
+        SlotChange change = new SlotChange("node-a",
+                List.of(new SlotChange.SlotState(1L, 7L, 1, "sensor-01", true, 1L)),
+                List.of(new SlotChange.SlotState(2L, 7L, 2, null, false, 0L)),
+                List.of(new SlotChange.LotState(8L, "North", "Campus", 45.45, 4.38)), List.of(9L));
+
+        // Act: Publish on node A
+        nodeA.publish(change);
+
+        // Assert: Node B gets an equal change, origin and lots included
+        assertThat(received.poll(1, TimeUnit.SECONDS)).isEqualTo(change);
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void receive_shouldApplyOffTheCallingThreadAndThenAcknowledge() throws Exception {
+        // Arrange: Subscriber on node B that notes where it runs
+        BlockingQueue<Thread> appliedOn = new LinkedBlockingQueue<>();
+        CountDownLatch acknowledged = new CountDownLatch(1);
+        nodeB.subscribe("node-b", change -> appliedOn.add(Thread.currentThread()));
+        byte[] payload = objectMapper.writeValueAsBytes(
+                new SlotChange("node-a", List.of(), List.of(), List.of(), List.of(8L)));
+
+        // Act: Deliver one message as the MQTT listener would
+        nodeB.receive(ByteBuffer.wrap(payload), acknowledged::countDown);
+
+        // Assert: Applied on another thread, acknowledged after that
+        assertThat(acknowledged.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(appliedOn.poll()).isNotNull().isNotSameAs(Thread.currentThread());
+    }
+
+    @Test
+    void publish_shouldDropChangesUntilConnected() {
+        // Arrange: No sender yet
+        List<SlotChange> received = new ArrayList<>();
+        nodeA.subscribe("node-a", received::add);
+
+        // Act: Publish before the MQTT connection is up
+        nodeA.publish(new SlotChange("node-a", List.of(), List.of(), List.of(), List.of()));
+
+        // Assert: Nothing is delivered, nothing fails
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void receive_shouldIgnoreUnreadablePayloads() throws Exception {
+        // Arrange: Subscriber on node B
+        BlockingQueue<SlotChange> received = new LinkedBlockingQueue<>();
+        nodeB.subscribe("node-b", received::add);
+        AtomicInteger acknowledged = new AtomicInteger();
+
+        // Act: Deliver garbage and an empty message
+        nodeB.receive(ByteBuffer.wrap("not json".getBytes(StandardCharsets.UTF_8)), acknowledged::incrementAndGet);
+        nodeB.receive(null, acknowledged::incrementAndGet);
+
+        // Assert: Both acknowledged right away, nothing reaches the subscriber
+        assertThat(acknowledged).hasValue(2);
+        assertThat(received.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+}
@@ -0,0 +1,43 @@
+package com.smartpark.parking_backend.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlotCodecsTest {
+
+    private JsonSlotCodec json;
+    private CborSlotCodec cbor;
+    private SlotCodecs codecs;
+
+    @BeforeEach
+    void setUp() {
+        json = new JsonSlotCodec(new ObjectMapper());
+        cbor = new CborSlotCodec();
+        codecs = new SlotCodecs(List.of(cbor, json));
+    }
+
+    @Test
+    void forSubprotocol_shouldFallBackToJson() {
+        // Act & Assert: Known subprotocol picks its codec, anything else is JSON
+        assertThat(codecs.forSubprotocol("slots.cbor")).isSameAs(cbor);
+        assertThat(codecs.forSubprotocol(null)).isSameAs(json);
+        assertThat(codecs.forSubprotocol("mqtt")).isSameAs(json);
+        assertThat(codecs.subprotocols()).containsExactly("slots.cbor", "slots.json");
+    }
+
+    @Test
+    void forAccept_shouldOnlyPickCodecNamedExplicitly() {
+        // Act & Assert: Wildcards, JSON and junk leave the default JSON response alone
+        assertThat(codecs.forAccept("application/cbor")).isSameAs(cbor);
+        assertThat(codecs.forAccept("text/html, application/cbor;q=0.9")).isSameAs(cbor);
+        assertThat(codecs.forAccept("application/json, application/cbor;q=0.5")).isNull();
+        assertThat(codecs.forAccept("*/*")).isNull();
+        assertThat(codecs.forAccept(null)).isNull();
+        assertThat(codecs.forAccept("not a media type")).isNull();
+    }
+}
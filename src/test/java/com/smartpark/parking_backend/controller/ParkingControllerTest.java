@@ -1,5 +1,15 @@
 package com.smartpark.parking_backend.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.smartpark.parking_backend.codec.CborSlotCodec;
+import com.smartpark.parking_backend.codec.JsonSlotCodec;
+import com.smartpark.parking_backend.codec.SlotCodecs;
+import com.smartpark.parking_backend.dto.LotAvailability;
+import com.smartpark.parking_backend.dto.LotView;
+import com.smartpark.parking_backend.dto.NearbyLot;
+import com.smartpark.parking_backend.dto.SlotPage;
+import com.smartpark.parking_backend.dto.SlotView;
 import com.smartpark.parking_backend.model.ParkingLot;
 import com.smartpark.parking_backend.model.ParkingSlot;
 import com.smartpark.parking_backend.service.ParkingService;
@@ -8,21 +18,27 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Arrays;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ParkingController.class)
+@Import({SlotCodecs.class, JsonSlotCodec.class, CborSlotCodec.class})
 class ParkingControllerTest {
 
     @Autowired
@@ -56,25 +72,99 @@ class ParkingControllerTest {
 
     @Test
     void getAllSlots_shouldReturnListOfAllSlots() throws Exception {
-        // Arrange: Mock service returns list of slots
-        List<ParkingSlot> slots = Arrays.asList(testSlot);
-        when(parkingService.getAllSlots()).thenReturn(slots);
+        // Arrange: Mock service returns list of slot views
+        List<SlotView> slots = Arrays.asList(new SlotView(5L, 1L, 1, false));
+        when(parkingService.getAllSlotViews()).thenReturn(slots);
 
-        // Act & Assert: Verify GET /api/parking/slots returns 200 with slot data
+        // Act & Assert: Verify GET /api/parking/slots returns 200 with flat slot data
         mockMvc.perform(get("/api/parking/slots"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)))
-                .andExpect(jsonPath("$[0].slotNumber").value(1))
-                .andExpect(jsonPath("$[0].sensorId").value("sensor-01"))
-                .andExpect(jsonPath("$[0].occupied").value(false));
+                .andExpect(jsonPath("$[0].id").value(5))
+                .andExpect(jsonPath("$[0].lotId").value(1))
+                .andExpect(jsonPath("$[0].number").value(1))
+                .andExpect(jsonPath("$[0].occupied").value(false))
+                .andExpect(jsonPath("$[0].parkingLot").doesNotExist());
 
-        verify(parkingService, times(1)).getAllSlots();
+        verify(parkingService, times(1)).getAllSlotViews();
+    }
+
+    @Test
+    void getAllSlots_shouldReturnFilteredPageWithNextCursor() throws Exception {
+        // Arrange: Mock service returns a full page of lot 1
+        when(parkingService.getSlotPage(1L, true, null, 10L, 2)).thenReturn(new SlotPage(
+                Arrays.asList(new SlotView(11L, 1L, 1, true), new SlotView(14L, 1L, 4, true)), 14L));
+
+        // Act & Assert: Verify the page is returned and the cursor is in the header
+        mockMvc.perform(get("/api/parking/slots")
+                        .param("lotId", "1")
+                        .param("occupied", "true")
+                        .param("after", "10")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].id").value(14))
+                .andExpect(header().string("X-Next-Cursor", "14"));
+
+        verify(parkingService, never()).getAllSlotViews();
+    }
+
+    @Test
+    void getAllSlots_shouldReturnBadRequestForLimitOutOfRange() throws Exception {
+        // Arrange: Service rejects the limit
+        when(parkingService.getSlotPage(null, null, null, null, 5000)).thenThrow(
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and 1000"));
+
+        // Act & Assert: Client error, not a server error
+        mockMvc.perform(get("/api/parking/slots").param("limit", "5000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllSlots_shouldReturnBadRequestForMalformedCursor() throws Exception {
+        // Act & Assert: A cursor that is not a slot id never reaches the service
+        mockMvc.perform(get("/api/parking/slots").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(parkingService);
+    }
+
+    @Test
+    void getAllSlots_shouldUseDefaultPageSizeAndOmitCursorOnLastPage() throws Exception {
+        // Arrange: Mock service returns the last page for a sensor
+        when(parkingService.getSlotPage(null, null, "sensor-01", null, 500)).thenReturn(new SlotPage(
+                Arrays.asList(new SlotView(5L, 1L, 1, false)), null));
+
+        // Act & Assert: Filter only, no limit given
+        mockMvc.perform(get("/api/parking/slots").param("sensorId", "sensor-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void getAllSlots_shouldEncodeCborWhenRequested() throws Exception {
+        // Arrange: Mock service returns one slot view
+        when(parkingService.getAllSlotViews()).thenReturn(Arrays.asList(new SlotView(5L, 1L, 1, true)));
+
+        // Act: Ask for CBOR
+        byte[] body = mockMvc.perform(get("/api/parking/slots").header("Accept", "application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Assert: Each slot is a compact [id, lotId, number, occupied] array
+        JsonNode slots = new CBORMapper().readTree(body);
+        assertThat(slots.size()).isEqualTo(1);
+        assertThat(slots.get(0).isArray()).isTrue();
+        assertThat(slots.get(0).get(0).asLong()).isEqualTo(5L);
+        assertThat(slots.get(0).get(3).asBoolean()).isTrue();
     }
 
     @Test
     void getAllSlots_shouldReturnEmptyArrayWhenNoSlotsExist() throws Exception {
         // Arrange: Mock service returns empty list
-        when(parkingService.getAllSlots()).thenReturn(Arrays.asList());
+        when(parkingService.getAllSlotViews()).thenReturn(Arrays.asList());
 
         // Act & Assert: Verify GET returns empty array with 200 status
         mockMvc.perform(get("/api/parking/slots"))
@@ -82,11 +172,68 @@ class ParkingControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    void getAllSlots_shouldSendETagFromDataVersion() throws Exception {
+        // Arrange: Service is at data version 42
+        when(parkingService.getDataVersion()).thenReturn(42L);
+        when(parkingService.getAllSlotViews()).thenReturn(Arrays.asList(new SlotView(5L, 1L, 1, false)));
+
+        // Act & Assert: Response carries a strong ETag and varies by Accept
+        mockMvc.perform(get("/api/parking/slots"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42\""))
+                .andExpect(header().string("Vary", containsString("Accept")));
+    }
+
+    @Test
+    void getAllSlots_shouldReturnNotModifiedWithoutReadingData() throws Exception {
+        // Arrange: Client already holds the current version
+        when(parkingService.getDataVersion()).thenReturn(42L);
+
+        // Act & Assert: 304 with no body, data is never read
+        mockMvc.perform(get("/api/parking/slots").header("If-None-Match", "\"42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(parkingService, never()).getAllSlotViews();
+    }
+
+    @Test
+    void getAllSlots_shouldUseSeparateETagPerEncoding() throws Exception {
+        // Arrange: JSON ETag held by the client, CBOR requested
+        when(parkingService.getDataVersion()).thenReturn(42L);
+        when(parkingService.getAllSlotViews()).thenReturn(Arrays.asList(new SlotView(5L, 1L, 1, false)));
+
+        // Act & Assert: JSON ETag does not validate the CBOR representation
+        mockMvc.perform(get("/api/parking/slots")
+                        .accept("application/cbor")
+                        .header("If-None-Match", "\"42\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42-slots.cbor\""));
+    }
+
+    @Test
+    void getAllLots_shouldReturnNotModifiedUntilDataChanges() throws Exception {
+        // Arrange: Version moves on after the first check
+        when(parkingService.getDataVersion()).thenReturn(7L, 8L);
+        when(parkingService.getAllLotViews(true)).thenReturn(Arrays.asList(LotView.of(testLot)));
+
+        // Act & Assert: Same version is 304, next version is a full response
+        mockMvc.perform(get("/api/parking/lots").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/parking/lots").header("If-None-Match", "\"7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"8\""))
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        verify(parkingService, times(1)).getAllLotViews(true);
+    }
+
     @Test
     void getAllLots_shouldReturnListOfAllParkingLots() throws Exception {
         // Arrange: Mock service returns list of parking lots
-        List<ParkingLot> lots = Arrays.asList(testLot);
-        when(parkingService.getAllLots()).thenReturn(lots);
+        List<LotView> lots = Arrays.asList(LotView.of(testLot));
+        when(parkingService.getAllLotViews(true)).thenReturn(lots);
 
         // Act & Assert: Verify GET /api/parking/lots returns 200 with lot data
         mockMvc.perform(get("/api/parking/lots"))
@@ -95,15 +242,134 @@ class ParkingControllerTest {
                 .andExpect(jsonPath("$[0].name").value("CPS2 Smart Garage"))
                 .andExpect(jsonPath("$[0].address").value("University Campus"))
                 .andExpect(jsonPath("$[0].latitude").value(45.450708))
-                .andExpect(jsonPath("$[0].longitude").value(4.387879));
+                .andExpect(jsonPath("$[0].longitude").value(4.387879))
+                .andExpect(jsonPath("$[0].parkingSlots").doesNotExist());
 
-        verify(parkingService, times(1)).getAllLots();
+        verify(parkingService, times(1)).getAllLotViews(true);
+    }
+
+    @Test
+    void getLotAvailability_shouldReturnCountersForLot() throws Exception {
+        // Arrange: Mock service returns counters for lot 1
+        when(parkingService.getLotAvailability(1L)).thenReturn(new LotAvailability(1L, 3, 1, 2));
+
+        // Act & Assert: Verify GET /api/parking/lots/{id}/availability returns the counts
+        mockMvc.perform(get("/api/parking/lots/1/availability"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lotId").value(1))
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.occupied").value(1))
+                .andExpect(jsonPath("$.free").value(2));
+
+        verify(parkingService, times(1)).getLotAvailability(1L);
+    }
+
+    @Test
+    void getLotAvailability_shouldReturnNotFoundForUnknownLot() throws Exception {
+        // Arrange: Service does not know lot 999
+        when(parkingService.getLotAvailability(999L)).thenThrow(
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Lot not found"));
+
+        // Act & Assert: 404 rather than a server error
+        mockMvc.perform(get("/api/parking/lots/999/availability"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getAllLotAvailability_shouldReturnSummaryForEveryLot() throws Exception {
+        // Arrange: Mock service returns two lots
+        when(parkingService.getAllLotAvailability()).thenReturn(Arrays.asList(
+                new LotAvailability(1L, 3, 1, 2),
+                new LotAvailability(2L, 0, 0, 0)));
+
+        // Act & Assert: Verify GET /api/parking/lots/availability returns one entry per lot
+        mockMvc.perform(get("/api/parking/lots/availability"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].lotId").value(2))
+                .andExpect(jsonPath("$[1].free").value(0));
+    }
+
+    @Test
+    void getNearbyLots_shouldPassQueryToService() throws Exception {
+        // Arrange: Mock service returns one nearby lot
+        when(parkingService.findNearbyLots(45.45, 4.38, 1500, 2)).thenReturn(Arrays.asList(
+                new NearbyLot(1L, "CPS2 Smart Garage", "University Campus", 45.450708, 4.387879, 120.5, 3, 2)));
+
+        // Act & Assert: Verify GET /api/parking/lots/nearby returns the lot with distance and free count
+        mockMvc.perform(get("/api/parking/lots/nearby")
+                        .param("lat", "45.45")
+                        .param("lon", "4.38")
+                        .param("radius", "1500")
+                        .param("minFree", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].lotId").value(1))
+                .andExpect(jsonPath("$[0].distanceMeters").value(120.5))
+                .andExpect(jsonPath("$[0].free").value(2));
+
+        verify(parkingService, times(1)).findNearbyLots(45.45, 4.38, 1500, 2);
+    }
+
+    @Test
+    void getNearbyLots_shouldUseDefaultRadiusAndMinFree() throws Exception {
+        // Arrange: Mock service returns nothing
+        when(parkingService.findNearbyLots(45.45, 4.38, 2000, 0)).thenReturn(Arrays.asList());
+
+        // Act & Assert: Only lat/lon given
+        mockMvc.perform(get("/api/parking/lots/nearby")
+                        .param("lat", "45.45")
+                        .param("lon", "4.38"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        verify(parkingService, times(1)).findNearbyLots(45.45, 4.38, 2000, 0);
+    }
+
+    @Test
+    void getNearbyLots_shouldReturnBadRequestForInvalidCoordinates() throws Exception {
+        // Arrange: Service rejects a latitude past the pole
+        when(parkingService.findNearbyLots(91, 4.38, 2000, 0)).thenThrow(
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid coordinates"));
+
+        // Act & Assert: Client error, not a server error
+        mockMvc.perform(get("/api/parking/lots/nearby")
+                        .param("lat", "91")
+                        .param("lon", "4.38"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllLots_shouldIncludeSlotsByDefault() throws Exception {
+        // Arrange: One lot with one slot
+        List<LotView> lots = Arrays.asList(LotView.of(testLot).withSlots(List.of(SlotView.of(testSlot))));
+        when(parkingService.getAllLotViews(true)).thenReturn(lots);
+
+        // Act & Assert: Slots are nested in the lot, as the Android app expects
+        mockMvc.perform(get("/api/parking/lots"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].parkingSlots", hasSize(1)))
+                .andExpect(jsonPath("$[0].parkingSlots[0].occupied").value(false));
+    }
+
+    @Test
+    void getAllLots_shouldLeaveOutSlotsWhenAsked() throws Exception {
+        // Arrange: Service returns lots without slots
+        when(parkingService.getAllLotViews(false)).thenReturn(Arrays.asList(LotView.of(testLot)));
+
+        // Act & Assert: No slot collection in the response
+        mockMvc.perform(get("/api/parking/lots").param("slots", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].parkingSlots").doesNotExist());
+
+        verify(parkingService, never()).getAllLotViews(true);
     }
 
     @Test
     void getAllLots_shouldReturnEmptyArrayWhenNoLotsExist() throws Exception {
         // Arrange: Mock service returns empty list
-        when(parkingService.getAllLots()).thenReturn(Arrays.asList());
+        when(parkingService.getAllLotViews(true)).thenReturn(Arrays.asList());
 
         // Act & Assert: Verify GET returns empty array with 200 status
         mockMvc.perform(get("/api/parking/lots"))
@@ -153,8 +419,8 @@ class ParkingControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(testSlot)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.slotNumber").value(1))
-                .andExpect(jsonPath("$.sensorId").value("sensor-01"));
+                .andExpect(jsonPath("$.number").value(1))
+                .andExpect(jsonPath("$.occupied").value(false));
 
         verify(parkingService, times(1)).addSlotToLot(eq(1L), any(ParkingSlot.class));
     }
@@ -176,6 +442,25 @@ class ParkingControllerTest {
         verify(parkingService, times(1)).addSlotToLot(eq(999L), any(ParkingSlot.class));
     }
 
+    @Test
+    void addSlotsToLot_shouldAddAllSlotsInOneRequest() throws Exception {
+        // Arrange: Mock service to add a list of slots
+        ParkingSlot second = new ParkingSlot();
+        second.setSlotNumber(2);
+        second.setSensorId("sensor-02");
+        when(parkingService.addSlotsToLot(anyLong(), anyList())).thenReturn(Arrays.asList(testSlot, second));
+
+        // Act & Assert: Verify POST /api/parking/lots/{lotId}/slots/bulk returns every created slot
+        mockMvc.perform(post("/api/parking/lots/1/slots/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(testSlot, second))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].number").value(2));
+
+        verify(parkingService, times(1)).addSlotsToLot(eq(1L), argThat(slots -> slots.size() == 2));
+    }
+
     // PUT Endpoint Tests
 
     @Test
@@ -237,8 +522,7 @@ class ParkingControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(updatedSlot)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.slotNumber").value(10))
-                .andExpect(jsonPath("$.sensorId").value("sensor-updated"));
+                .andExpect(jsonPath("$.number").value(10));
 
         verify(parkingService, times(1)).updateSLotDetails(eq(1L), any(ParkingSlot.class));
     }
@@ -291,7 +575,7 @@ class ParkingControllerTest {
     @Test
     void endpoints_shouldAllowCrossOriginRequests() throws Exception {
         // Arrange: Mock service for CORS test
-        when(parkingService.getAllSlots()).thenReturn(Arrays.asList(testSlot));
+        when(parkingService.getAllSlotViews()).thenReturn(Arrays.asList(SlotView.of(testSlot)));
 
         // Act & Assert: Verify CORS headers are present for cross-origin requests
         mockMvc.perform(get("/api/parking/slots")
@@ -332,10 +616,10 @@ class ParkingControllerTest {
     @Test
     void androidAppScenario_shouldRetrieveAllLotsAndSlots() throws Exception {
         // Arrange: Mock data for typical Android app request flow
-        List<ParkingLot> lots = Arrays.asList(testLot);
-        List<ParkingSlot> slots = Arrays.asList(testSlot);
-        when(parkingService.getAllLots()).thenReturn(lots);
-        when(parkingService.getAllSlots()).thenReturn(slots);
+        List<LotView> lots = Arrays.asList(LotView.of(testLot));
+        List<SlotView> slots = Arrays.asList(SlotView.of(testSlot));
+        when(parkingService.getAllLotViews(true)).thenReturn(lots);
+        when(parkingService.getAllSlotViews()).thenReturn(slots);
 
         // Act & Assert: Verify Android app can fetch both lots and slots
         mockMvc.perform(get("/api/parking/lots"))
@@ -346,7 +630,7 @@ class ParkingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(1)));
 
-        verify(parkingService, times(1)).getAllLots();
-        verify(parkingService, times(1)).getAllSlots();
+        verify(parkingService, times(1)).getAllLotViews(true);
+        verify(parkingService, times(1)).getAllSlotViews();
     }
 }
@@ -0,0 +1,147 @@
+package com.smartpark.parking_backend.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorDebouncerTest {
+
+    private static final long MS = 1_000_000L;
+
+    // occupancy the store holds per sensor; absent means unknown
+    private final Map<String, Boolean> store = new HashMap<>();
+
+    private SensorDebouncer debouncer(long stableMs, int readings) {
+        return new SensorDebouncer(stableMs, readings, event -> store.get(event.sensorId()));
+    }
+
+    private static SensorEvent reading(boolean occupied) {
+        return new SensorEvent("sensor-01", 1L, occupied);
+    }
+
+    @Test
+    void offer_shouldDropReadingsThatMatchCurrentState() {
+        // Arrange: Slot is free, no debounce configured
+        store.put("sensor-01", false);
+        SensorDebouncer debouncer = debouncer(0, 0);
+
+        // Act & Assert: A repeat is dropped, a real change passes at once
+        assertThat(debouncer.offer(reading(false), 0)).isNull();
+        assertThat(debouncer.offer(reading(true), 0)).isEqualTo(reading(true));
+    }
+
+    @Test
+    void offer_shouldPassEventsForUnknownTargets() {
+        // Arrange: Store does not know the sensor, debounce is strict
+        SensorDebouncer debouncer = debouncer(10_000, 5);
+
+        // Act & Assert: Nothing to compare against, so the service decides
+        assertThat(debouncer.offer(reading(true), 0)).isEqualTo(reading(true));
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+
+    @Test
+    void offer_shouldConfirmChangeAfterEnoughReadings() {
+        // Arrange: Three matching readings needed
+        store.put("sensor-01", false);
+        SensorDebouncer debouncer = debouncer(0, 3);
+
+        // Act & Assert: Held twice, let through on the third
+        assertThat(debouncer.offer(reading(true), 0)).isNull();
+        assertThat(debouncer.offer(reading(true), 1)).isNull();
+        assertThat(debouncer.offer(reading(true), 2)).isEqualTo(reading(true));
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+
+    @Test
+    void offer_shouldCancelPendingChangeWhenSensorFlipsBack() {
+        // Arrange: Three matching readings needed
+        store.put("sensor-01", false);
+        SensorDebouncer debouncer = debouncer(0, 3);
+
+        // Act: Car passes by: occupied, occupied, free, occupied
+        debouncer.offer(reading(true), 0);
+        debouncer.offer(reading(true), 1);
+        debouncer.offer(reading(false), 2);
+        SensorEvent result = debouncer.offer(reading(true), 3);
+
+        // Assert: The flip back reset the count
+        assertThat(result).isNull();
+        assertThat(debouncer.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void offer_shouldKeepPendingChangesOfSpotsSharingATopic() {
+        // Arrange: Two spots publish on topic "cps2" without a sensorId; both are free
+        store.put("cps2", false);
+        SensorDebouncer debouncer = debouncer(0, 2);
+        SensorEvent spot1Occupied = new SensorEvent("cps2", 1L, true);
+
+        // Act: Spot 1 starts a change, spot 2 repeats its free state, spot 1 confirms
+        SensorEvent first = debouncer.offer(spot1Occupied, 0);
+        SensorEvent repeat = debouncer.offer(new SensorEvent("cps2", 2L, false), 1);
+        SensorEvent confirmed = debouncer.offer(spot1Occupied, 2);
+
+        // Assert: Spot 2's repeat did not cancel spot 1's pending change
+        assertThat(first).isNull();
+        assertThat(repeat).isNull();
+        assertThat(confirmed).isEqualTo(spot1Occupied);
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+
+    @Test
+    void drainDue_shouldReleaseChangeOnceStableLongEnough() {
+        // Arrange: Change must hold for 500 ms, sensor reports only once
+        store.put("sensor-01", false);
+        SensorDebouncer debouncer = debouncer(500, 0);
+        assertThat(debouncer.offer(reading(true), 0)).isNull();
+        Map<String, SensorEvent> batch = new LinkedHashMap<>();
+
+        // Act: Check before and after the window
+        debouncer.drainDue(499 * MS, batch);
+        boolean heldEarly = batch.isEmpty();
+        debouncer.drainDue(500 * MS, batch);
+
+        // Assert: Released only when due
+        assertThat(heldEarly).isTrue();
+        assertThat(batch.values()).containsExactly(reading(true));
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+
+    @Test
+    void drainAll_shouldReleaseChangesThatAreNotStableYet() {
+        // Arrange: Change must hold for 500 ms, only 100 ms have passed
+        store.put("sensor-01", false);
+        SensorDebouncer debouncer = debouncer(500, 3);
+        debouncer.offer(reading(true), 0);
+        Map<String, SensorEvent> batch = new LinkedHashMap<>();
+
+        // Act: Shut down early
+        debouncer.drainAll(batch);
+
+        // Assert: The held reading comes out anyway
+        assertThat(batch.values()).containsExactly(reading(true));
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+
+    @Test
+    void drainDue_shouldDropChangeAlreadyAppliedElsewhere() {
+        // Arrange: Pending change, then the slot is set through the API
+        store.put("sensor-01", false);
+        SensorDebouncer debouncer = debouncer(500, 0);
+        debouncer.offer(reading(true), 0);
+        store.put("sensor-01", true);
+        Map<String, SensorEvent> batch = new LinkedHashMap<>();
+
+        // Act: Window passes
+        debouncer.drainDue(600 * MS, batch);
+
+        // Assert: Nothing left to apply
+        assertThat(batch).isEmpty();
+        assertThat(debouncer.pendingCount()).isZero();
+    }
+}
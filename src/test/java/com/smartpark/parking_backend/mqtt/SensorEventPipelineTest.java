@@ -0,0 +1,242 @@
+package com.smartpark.parking_backend.mqtt;
+
+import com.smartpark.parking_backend.config.IngestProperties;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.service.OccupancyStore;
+import com.smartpark.parking_backend.service.ParkingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SensorEventPipelineTest {
+
+    @Mock
+    private ParkingService parkingService;
+
+    @Mock
+    private IngestProperties ingestProperties;
+
+    @Mock
+    private OccupancyStore occupancyStore;
+
+    private SensorEventPipeline pipeline;
+
+    private static final Runnable NO_ACK = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(ingestProperties.getQueueCapacity()).thenReturn(100);
+        lenient().when(ingestProperties.getWorkers()).thenReturn(2);
+        lenient().when(ingestProperties.getBatchWindowMs()).thenReturn(200L);
+        lenient().when(ingestProperties.getMaxBatchSize()).thenReturn(100);
+        pipeline = new SensorEventPipeline(ingestProperties, new MqttMessageListener(parkingService), parkingService, occupancyStore);
+    }
+
+    @Test
+    void flush_shouldApplyAllSensorEventsInOneBatch() {
+        // Arrange: Both sensors are known
+        when(parkingService.updateSlotsStatusBySensorIds(anyMap())).thenReturn(Set.of("sensor-01", "sensor-02"));
+
+        // Act: Flush two sensor events
+        pipeline.flush(List.of(
+                new SensorEvent("sensor-01", 1L, true),
+                new SensorEvent("sensor-02", 2L, false)));
+
+        // Assert: One batch call, no per-slot fallback
+        verify(parkingService, times(1)).updateSlotsStatusBySensorIds(Map.of("sensor-01", true, "sensor-02", false));
+        verify(parkingService, never()).updateSlotStatusBySlotIdUsingSensor(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void flush_shouldFallbackToSlotIdForUnknownSensors() {
+        // Arrange: Only the first sensor is known
+        when(parkingService.updateSlotsStatusBySensorIds(anyMap())).thenReturn(Set.of("sensor-01"));
+
+        // Act: Flush one known and one unknown sensor
+        pipeline.flush(List.of(
+                new SensorEvent("sensor-01", 1L, true),
+                new SensorEvent("sensor-404", 2L, true)));
+
+        // Assert: Unknown sensor falls back to its spot number
+        verify(parkingService, times(1)).updateSlotStatusBySlotIdUsingSensor(2L, true);
+        verify(parkingService, never()).updateSlotStatusBySlotIdUsingSensor(eq(1L), anyBoolean());
+    }
+
+    @Test
+    void submit_shouldCoalesceReadingsForTheSameSensor() {
+        // Arrange: Start the worker and queue a burst for one sensor
+        when(parkingService.updateSlotsStatusBySensorIds(anyMap())).thenReturn(Set.of("sensor-01"));
+        pipeline.start();
+
+        // Act: Three readings inside one window, then drain on shutdown
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), NO_ACK);
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", false), NO_ACK);
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), NO_ACK);
+        pipeline.stop();
+
+        // Assert: Only the latest reading reaches the service, once
+        verify(parkingService, times(1)).updateSlotsStatusBySensorIds(Map.of("sensor-01", true));
+        verify(parkingService, never()).updateSlotsStatusBySensorIds(Map.of("sensor-01", false));
+    }
+
+    @Test
+    void submit_shouldKeepEverySpotPublishedOnOneTopic() {
+        // Arrange: Payloads carry no sensorId, so both fall back to the topic "cps2"
+        when(parkingService.updateSlotsStatusBySensorIds(anyMap())).thenReturn(Set.of());
+        pipeline.start();
+
+        // Act: Two spots report on the same topic inside one window
+        pipeline.submit("parking/cps2", payload("{\"spot\":1,\"status\":true}"), NO_ACK);
+        pipeline.submit("parking/cps2", payload("{\"spot\":2,\"status\":true}"), NO_ACK);
+        pipeline.stop();
+
+        // Assert: Neither spot is coalesced away
+        verify(parkingService).updateSlotStatusBySlotIdUsingSensor(1L, true);
+        verify(parkingService).updateSlotStatusBySlotIdUsingSensor(2L, true);
+    }
+
+    @Test
+    void submit_shouldKeepOtherSensorsMovingWhileOnePartitionIsBusy() throws Exception {
+        // Arrange: sensor-01 and sensor-02 hash to different workers; applying sensor-01 hangs
+        CountDownLatch release = new CountDownLatch(1);
+        when(parkingService.updateSlotsStatusBySensorIds(Map.of("sensor-01", true))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Set.of("sensor-01");
+        });
+        when(parkingService.updateSlotsStatusBySensorIds(Map.of("sensor-02", true))).thenReturn(Set.of("sensor-02"));
+        pipeline.start();
+
+        // Act: One reading for each sensor
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), NO_ACK);
+        pipeline.submit("parking/sensor/2", sensorPayload("sensor-02", true), NO_ACK);
+
+        // Assert: sensor-02 is applied while sensor-01 is still stuck
+        verify(parkingService, timeout(2000)).updateSlotsStatusBySensorIds(Map.of("sensor-02", true));
+        release.countDown();
+        pipeline.stop();
+    }
+
+    @Test
+    void submit_shouldParkReadingsForAFullPartitionWithoutHoldingUpOthers() throws Exception {
+        // Arrange: One queue slot per partition; applying sensor-01 hangs until released
+        when(ingestProperties.getQueueCapacity()).thenReturn(2);
+        when(ingestProperties.getBatchWindowMs()).thenReturn(0L);
+        CountDownLatch release = new CountDownLatch(1);
+        when(parkingService.updateSlotsStatusBySensorIds(anyMap())).thenAnswer(invocation -> {
+            Map<String, Boolean> statuses = invocation.getArgument(0);
+            if (statuses.containsKey("sensor-01")) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return statuses.keySet();
+        });
+        pipeline = new SensorEventPipeline(ingestProperties, new MqttMessageListener(parkingService), parkingService, occupancyStore);
+        pipeline.start();
+        List<String> acked = new CopyOnWriteArrayList<>();
+        CountDownLatch parkedAcked = new CountDownLatch(1);
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), () -> acked.add("first"));
+        verify(parkingService, timeout(2000)).updateSlotsStatusBySensorIds(Map.of("sensor-01", true));
+
+        // Act: Fill sensor-01's queue, park one more, then the same caller submits sensor-02
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", false), () -> acked.add("queued"));
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), () -> {
+            acked.add("parked");
+            parkedAcked.countDown();
+        });
+        pipeline.submit("parking/sensor/2", sensorPayload("sensor-02", true), () -> acked.add("other"));
+
+        // Assert: sensor-02 is acknowledged and applied while the parked reading waits
+        assertThat(acked).containsExactly("first", "queued", "other");
+        verify(parkingService, timeout(2000)).updateSlotsStatusBySensorIds(Map.of("sensor-02", true));
+        assertThat(acked).doesNotContain("parked");
+        release.countDown();
+        assertThat(parkedAcked.await(2, TimeUnit.SECONDS)).isTrue();
+        pipeline.stop();
+    }
+
+    @Test
+    void submit_shouldDropReadingsThatMatchCurrentState() {
+        // Arrange: The sensor's slot is already occupied
+        ParkingSlot slot = new ParkingSlot();
+        slot.setOccupied(true);
+        when(occupancyStore.slotsForSensor("sensor-01")).thenReturn(List.of(slot));
+        pipeline.start();
+
+        // Act: Sensor repeats its state, then drain on shutdown
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), NO_ACK);
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), NO_ACK);
+        pipeline.stop();
+
+        // Assert: Nothing reaches the service
+        verifyNoInteractions(parkingService);
+    }
+
+    @Test
+    void stop_shouldApplyChangesTheDebouncerStillHolds() {
+        // Arrange: Three readings needed to confirm a change; the slot is free
+        when(ingestProperties.getDebounceReadings()).thenReturn(3);
+        ParkingSlot slot = new ParkingSlot();
+        slot.setOccupied(false);
+        when(occupancyStore.slotsForSensor("sensor-01")).thenReturn(List.of(slot));
+        when(parkingService.updateSlotsStatusBySensorIds(anyMap())).thenReturn(Set.of("sensor-01"));
+        pipeline.start();
+
+        // Act: One unconfirmed reading, then shut down
+        pipeline.submit("parking/sensor/1", sensorPayload("sensor-01", true), NO_ACK);
+        pipeline.stop();
+
+        // Assert: The held change is applied rather than lost
+        verify(parkingService, times(1)).updateSlotsStatusBySensorIds(Map.of("sensor-01", true));
+    }
+
+    @Test
+    void currentState_shouldBeUnknownWhenSensorSlotsDisagree() {
+        // Arrange: One sensor drives two slots in different states
+        ParkingSlot occupied = new ParkingSlot();
+        occupied.setOccupied(true);
+        ParkingSlot free = new ParkingSlot();
+        free.setOccupied(false);
+        when(occupancyStore.slotsForSensor("sensor-01")).thenReturn(List.of(occupied, free));
+
+        // Act & Assert: No single state to debounce against
+        assertThat(pipeline.currentState(new SensorEvent("sensor-01", 1L, true))).isNull();
+    }
+
+    @Test
+    void submit_shouldIgnoreUnparseablePayloads() {
+        // Arrange: Workers running
+        pipeline.start();
+        List<String> acked = new CopyOnWriteArrayList<>();
+
+        // Act: Submit a payload that is not JSON
+        pipeline.submit("parking/sensor/1", payload("this is not json"), () -> acked.add("bad"));
+        pipeline.stop();
+
+        // Assert: Acknowledged at once so it frees its receive slot; nothing applied
+        assertThat(acked).containsExactly("bad");
+        verifyNoInteractions(parkingService);
+    }
+
+    private static ByteBuffer sensorPayload(String sensorId, boolean occupied) {
+        return payload("{\"sensorId\":\"" + sensorId + "\",\"spot\":1,\"status\":" + occupied + "}");
+    }
+
+    private static ByteBuffer payload(String json) {
+        return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,120 @@
+package com.smartpark.parking_backend.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SensorPayloadParserTest {
+
+    private static SensorEvent parse(String topic, String payload) {
+        return SensorPayloadParser.parse(topic, ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void parse_shouldReadCleanPayload() {
+        // Act: Parse a standard payload with every field
+        SensorEvent event = parse("parking/sensor/x", "{\"sensorId\":\"sensor-01\",\"spot\":1,\"status\":true}");
+
+        // Assert: All fields are extracted
+        assertThat(event).isEqualTo(new SensorEvent("sensor-01", 1L, true));
+    }
+
+    @Test
+    void parse_shouldFallbackToTopicSuffixForSensorId() {
+        // Act: Parse payload without sensorId
+        SensorEvent event = parse("parking/cps2/sensor-07", "{\"spot\":7,\"status\":false}");
+
+        // Assert: Last topic segment is used as the sensor id
+        assertThat(event.sensorId()).isEqualTo("sensor-07");
+        assertThat(event.slotId()).isEqualTo(7L);
+        assertThat(event.occupied()).isFalse();
+    }
+
+    @Test
+    void parse_shouldTreatBlankSensorIdAsMissing() {
+        // Act: Parse payload with whitespace-only sensorId
+        SensorEvent event = parse("parking/sensor/s-9", "{\"sensorId\":\"  \",\"spot\":9,\"status\":1}");
+
+        // Assert: Topic suffix wins over the blank value
+        assertThat(event.sensorId()).isEqualTo("s-9");
+    }
+
+    @Test
+    void parse_shouldExtractDigitsFromEmbeddedSpotFormats() {
+        // Act & Assert: "spot1", "spot-2" and " 3 " all yield their digits
+        assertThat(parse("t/a", "{\"spot\":\"spot1\",\"status\":true}").slotId()).isEqualTo(1L);
+        assertThat(parse("t/a", "{\"spot\":\"spot-2\",\"status\":true}").slotId()).isEqualTo(2L);
+        assertThat(parse("t/a", "{\"spot\":\" 3 \",\"status\":true}").slotId()).isEqualTo(3L);
+    }
+
+    @Test
+    void parse_shouldLeaveSlotIdEmptyWhenSpotHasNoDigits() {
+        // Act: Parse payload whose spot carries no digits
+        SensorEvent event = parse("parking/sensor/s-1", "{\"spot\":\"entrance\",\"status\":true}");
+
+        // Assert: Event still targets the sensor, without a slot id
+        assertThat(event.slotId()).isNull();
+        assertThat(event.sensorId()).isEqualTo("s-1");
+    }
+
+    @Test
+    void parse_shouldAcceptAllStatusForms() {
+        // Act & Assert: booleans, numbers and strings map like the legacy parser
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":true}").occupied()).isTrue();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":false}").occupied()).isFalse();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":1}").occupied()).isTrue();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":0}").occupied()).isFalse();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":\"1\"}").occupied()).isTrue();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":\" TRUE \"}").occupied()).isTrue();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":\"false\"}").occupied()).isFalse();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":\"on\"}").occupied()).isFalse();
+    }
+
+    @Test
+    void parse_shouldSkipUnknownFieldsOfAnyShape() {
+        // Act: Parse payload with nested and unknown fields
+        SensorEvent event = parse("t/a",
+                "{\"meta\":{\"fw\":\"1.2\",\"tags\":[1,\"x\"]},\"spot\":4,\"battery\":3.7,\"status\":true}");
+
+        // Assert: Known fields are still read
+        assertThat(event.slotId()).isEqualTo(4L);
+        assertThat(event.occupied()).isTrue();
+    }
+
+    @Test
+    void parse_shouldDecodeEscapedSensorId() {
+        // Act: Parse sensorId containing an escaped quote
+        SensorEvent event = parse("t/a", "{\"sensorId\":\"a\\\"b\",\"spot\":1,\"status\":true}");
+
+        // Assert: Escape is decoded
+        assertThat(event.sensorId()).isEqualTo("a\"b");
+    }
+
+    @Test
+    void parse_shouldRejectMalformedOrIncompletePayloads() {
+        // Act & Assert: invalid JSON, missing fields and empty input yield no event
+        assertThat(parse("t/a", "this is not json")).isNull();
+        assertThat(parse("t/a", "")).isNull();
+        assertThat(parse("t/a", "{\"status\":true}")).isNull();
+        assertThat(parse("t/a", "{\"spot\":1}")).isNull();
+        assertThat(parse("t/a", "{\"spot\":1,\"status\":true")).isNull();
+        assertThat(SensorPayloadParser.parse("t/a", null)).isNull();
+    }
+
+    @Test
+    void parse_shouldNotMoveBufferPosition() {
+        // Arrange: Buffer as delivered by the MQTT client
+        ByteBuffer buffer = ByteBuffer.wrap("{\"spot\":1,\"status\":true}".getBytes(StandardCharsets.UTF_8));
+
+        // Act: Parse twice from the same buffer
+        SensorPayloadParser.parse("t/a", buffer);
+        SensorEvent second = SensorPayloadParser.parse("t/a", buffer);
+
+        // Assert: Buffer is untouched and can be re-read
+        assertThat(buffer.position()).isZero();
+        assertThat(second.slotId()).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,113 @@
+package com.smartpark.parking_backend.service;
+
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LotSpatialIndexTest {
+
+    @Mock
+    private ParkingLotRepository parkingLotRepository;
+
+    private LotSpatialIndex index;
+
+    private static ParkingLot lot(long id, double latitude, double longitude) {
+        ParkingLot lot = new ParkingLot();
+        ReflectionTestUtils.setField(lot, "id", id);
+        lot.setName("Lot " + id);
+        lot.setLatitude(latitude);
+        lot.setLongitude(longitude);
+        return lot;
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Saint-Etienne campus, a lot ~1.1 km north, one in Lyon (~50 km away)
+        when(parkingLotRepository.findAll()).thenReturn(List.of(
+                lot(1L, 45.450708, 4.387879),
+                lot(2L, 45.460708, 4.387879),
+                lot(3L, 45.764043, 4.835659)));
+        index = new LotSpatialIndex(parkingLotRepository);
+        index.reload();
+    }
+
+    @Test
+    void within_shouldReturnLotsInsideRadiusNearestFirst() {
+        // Act: Search 2 km around a point just north of lot 1
+        List<LotSpatialIndex.Hit> hits = index.within(45.4520, 4.387879, 2000);
+
+        // Assert: Both nearby lots, sorted by distance, Lyon excluded
+        assertThat(hits).extracting(hit -> hit.location().lotId()).containsExactly(1L, 2L);
+        assertThat(hits.get(0).distanceMeters()).isCloseTo(143.6, within(1.0));
+    }
+
+    @Test
+    void within_shouldHandleRadiusSpanningManyCells() {
+        // Act: Search 100 km, wider than the populated grid
+        List<LotSpatialIndex.Hit> hits = index.within(45.450708, 4.387879, 100_000);
+
+        // Assert: Every lot found
+        assertThat(hits).extracting(hit -> hit.location().lotId()).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void put_shouldMoveLotKnownOnlyByItsValues() {
+        // Act: Another instance moved lot 2 to Lyon
+        index.put(2L, "Lot 2", null, 45.764043, 4.835659);
+
+        // Assert: It left the campus and shows up next to lot 3
+        assertThat(index.within(45.450708, 4.387879, 2000))
+            .extracting(hit -> hit.location().lotId()).containsExactly(1L);
+        assertThat(index.within(45.764043, 4.835659, 2000))
+            .extracting(hit -> hit.location().lotId()).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void within_shouldFindLotsAcrossTheAntimeridian() {
+        // Arrange: Lots either side of the 180th meridian, about 2 km apart
+        index.put(lot(4L, -17.0, 179.99));
+        index.put(lot(5L, -17.0, -179.99));
+
+        // Act: Search 5 km around each of them
+        List<LotSpatialIndex.Hit> east = index.within(-17.0, 179.99, 5000);
+        List<LotSpatialIndex.Hit> west = index.within(-17.0, -179.99, 5000);
+
+        // Assert: The lot on the other side is found both ways
+        assertThat(east).extracting(hit -> hit.location().lotId()).containsExactly(4L, 5L);
+        assertThat(west).extracting(hit -> hit.location().lotId()).containsExactly(5L, 4L);
+    }
+
+    @Test
+    void put_shouldMoveLotWhenCoordinatesChange() {
+        // Act: Move lot 3 next to the campus
+        index.put(lot(3L, 45.451, 4.388));
+
+        // Assert: It is now found in the small radius
+        assertThat(index.within(45.450708, 4.387879, 500))
+                .extracting(hit -> hit.location().lotId()).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void remove_shouldDropLotFromResults() {
+        // Act: Remove lot 1
+        index.remove(1L);
+
+        // Assert: Only lot 2 is left nearby
+        assertThat(index.within(45.450708, 4.387879, 2000))
+                .extracting(hit -> hit.location().lotId()).containsExactly(2L);
+    }
+}
@@ -0,0 +1,141 @@
+package com.smartpark.parking_backend.service;
+
+import com.hivemq.client.mqtt.datatypes.MqttTopic;
+import com.hivemq.client.mqtt.mqtt5.message.publish.Mqtt5Publish;
+import com.smartpark.parking_backend.bus.MqttSlotUpdateBus;
+import com.smartpark.parking_backend.config.IngestProperties;
+import com.smartpark.parking_backend.config.MqttProperties;
+import com.smartpark.parking_backend.mqtt.MqttMessageListener;
+import com.smartpark.parking_backend.mqtt.SensorEventPipeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MqttServiceTest {
+
+    @Mock
+    private MqttProperties mqttProperties;
+
+    @Mock
+    private MqttMessageListener messageListener;
+
+    @Mock
+    private SensorEventPipeline ingestPipeline;
+
+    @Mock
+    private IngestProperties ingestProperties;
+
+    @Mock
+    private ObjectProvider<MqttSlotUpdateBus> slotBusProvider;
+
+    @Mock
+    private Mqtt5Publish publish;
+
+    private MqttService mqttService;
+
+    private final ByteBuffer payload = ByteBuffer.wrap("{\"spot\":1,\"status\":true}".getBytes(StandardCharsets.UTF_8));
+
+    @BeforeEach
+    void setUp() {
+        mqttService = new MqttService(mqttProperties, messageListener, ingestPipeline, ingestProperties, slotBusProvider);
+        lenient().when(publish.getTopic()).thenReturn(MqttTopic.of("parking/sensor/1"));
+        lenient().when(publish.getPayload()).thenReturn(Optional.of(payload));
+    }
+
+    @Test
+    void handle_shouldAcknowledgeOnlyOncePipelineAcceptsMessage() {
+        // Arrange: Batch ingest is on
+        when(ingestProperties.isBatchEnabled()).thenReturn(true);
+
+        // Act: Deliver one publish
+        mqttService.handle(publish);
+
+        // Assert: Handed over without acking; the pipeline's callback acknowledges it
+        ArgumentCaptor<Runnable> onAccepted = ArgumentCaptor.forClass(Runnable.class);
+        verify(ingestPipeline).submit(eq("parking/sensor/1"), eq(payload), onAccepted.capture());
+        verify(publish, never()).acknowledge();
+        onAccepted.getValue().run();
+        verify(publish, times(1)).acknowledge();
+    }
+
+    @Test
+    void handle_shouldAcknowledgeMessagesThatFailToProcess() {
+        // Arrange: Direct mode, processing throws
+        when(ingestProperties.isBatchEnabled()).thenReturn(false);
+        doThrow(new RuntimeException("Slot not Found")).when(messageListener).processMessage(any(), any());
+
+        // Act: Deliver one publish
+        mqttService.handle(publish);
+
+        // Assert: Acknowledged anyway so it does not hold a receive slot
+        verify(messageListener, times(1)).processMessage("parking/sensor/1", "{\"spot\":1,\"status\":true}");
+        verify(publish, times(1)).acknowledge();
+    }
+
+    @Test
+    void handle_shouldRouteSlotBusMessagesAwayFromIngest() throws Exception {
+        // Arrange: Bus listens on the topic the publish arrives on
+        MqttSlotUpdateBus slotBus = mock(MqttSlotUpdateBus.class);
+        when(slotBus.topic()).thenReturn("parking/sensor/1");
+        when(slotBusProvider.getIfAvailable()).thenReturn(slotBus);
+        mqttService = new MqttService(mqttProperties, messageListener, ingestPipeline, ingestProperties, slotBusProvider);
+
+        // Act: Deliver one publish
+        mqttService.handle(publish);
+
+        // Assert: The bus gets it with the acknowledgement, the ingest path does not
+        ArgumentCaptor<Runnable> onApplied = ArgumentCaptor.forClass(Runnable.class);
+        verify(slotBus, times(1)).receive(eq(payload), onApplied.capture());
+        verify(publish, never()).acknowledge();
+        onApplied.getValue().run();
+        verify(publish, times(1)).acknowledge();
+        verifyNoInteractions(ingestPipeline, messageListener);
+    }
+
+    @Test
+    void connect_shouldRejectQosZeroWithBatchIngest() {
+        // Arrange: Complete configuration asking for QoS 0
+        when(mqttProperties.isEnabled()).thenReturn(true);
+        when(mqttProperties.getBrokerHost()).thenReturn("broker.example.com");
+        when(mqttProperties.getClientUsername()).thenReturn("backend");
+        when(mqttProperties.getQos()).thenReturn(0);
+        when(ingestProperties.isBatchEnabled()).thenReturn(true);
+
+        // Act & Assert: Parked readings would have no receive-maximum bound
+        assertThatThrownBy(() -> mqttService.connect())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("mqtt.qos");
+    }
+
+    @Test
+    void topicFilter_shouldWrapTopicInSharedSubscriptionWhenGroupIsSet() {
+        // Act & Assert: Blank group keeps the plain topic, a group shares it
+        assertThat(MqttService.topicFilter("parking/#", "")).isEqualTo("parking/#");
+        assertThat(MqttService.topicFilter("parking/#", null)).isEqualTo("parking/#");
+        assertThat(MqttService.topicFilter("parking/#", " backend ")).isEqualTo("$share/backend/parking/#");
+    }
+
+    @Test
+    void topicFilter_shouldRejectGroupWithTopicSeparatorsOrWildcards() {
+        // Act & Assert: The group is a single topic level without wildcards
+        assertThatThrownBy(() -> MqttService.topicFilter("parking/#", "a/b"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> MqttService.topicFilter("parking/#", "a+"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,236 @@
+package com.smartpark.parking_backend.service;
+
+import com.smartpark.parking_backend.dto.LotAvailability;
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.repository.ParkingLotRepository;
+import com.smartpark.parking_backend.repository.ParkingSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyStoreTest {
+
+    @Mock
+    private ParkingSlotRepository parkingSlotRepository;
+
+    @Mock
+    private ParkingLotRepository parkingLotRepository;
+
+    private OccupancyStore occupancyStore;
+
+    private ParkingSlot slot1;
+    private ParkingSlot slot2;
+
+    private static ParkingSlot slot(long id, String sensorId, boolean occupied) {
+        ParkingSlot slot = new ParkingSlot();
+        ReflectionTestUtils.setField(slot, "id", id);
+        slot.setSlotNumber((int) id);
+        slot.setSensorId(sensorId);
+        slot.setOccupied(occupied);
+        return slot;
+    }
+
+    @BeforeEach
+    void setUp() {
+        slot1 = slot(1L, "sensor-01", false);
+        slot2 = slot(2L, "sensor-01", false);
+        when(parkingSlotRepository.findAll()).thenReturn(List.of(slot1, slot2, slot(3L, null, true)));
+        occupancyStore = new OccupancyStore(parkingSlotRepository, parkingLotRepository);
+        occupancyStore.reload();
+    }
+
+    @Test
+    void reload_shouldIndexSlotsByIdAndSensor() {
+        // Assert: All slots loaded, sensor index groups shared sensors
+        assertThat(occupancyStore.size()).isEqualTo(3);
+        assertThat(occupancyStore.get(1L)).isSameAs(slot1);
+        assertThat(occupancyStore.slotsForSensor("sensor-01")).containsExactlyInAnyOrder(slot1, slot2);
+        assertThat(occupancyStore.slotsForSensor("sensor-404")).isEmpty();
+    }
+
+    @Test
+    void reload_shouldBumpGeneration() {
+        // Arrange: Generation after the initial load
+        long before = occupancyStore.generation();
+
+        // Act: Reload, as the data loader does after seeding
+        occupancyStore.reload();
+
+        // Assert: Anything cached from the old contents can tell
+        assertThat(occupancyStore.generation()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void setOccupied_shouldReturnOnlySlotsThatChanged() {
+        // Arrange: One of the two slots is already occupied
+        slot2.setOccupied(true);
+
+        // Act: Mark both as occupied
+        List<ParkingSlot> changed = occupancyStore.setOccupied(List.of(slot1, slot2), true);
+
+        // Assert: Only the free slot flipped
+        assertThat(changed).containsExactly(slot1);
+        assertThat(slot1.getOccupied()).isTrue();
+    }
+
+    @Test
+    void put_shouldMoveSlotToItsNewSensor() {
+        // Arrange: Slot 1 gets a replacement sensor
+        ParkingSlot updated = slot(1L, "sensor-02", false);
+
+        // Act: Sync the update into the store
+        occupancyStore.put(updated);
+
+        // Assert: Old sensor no longer maps to the slot
+        assertThat(occupancyStore.slotsForSensor("sensor-01")).containsExactly(slot2);
+        assertThat(occupancyStore.slotsForSensor("sensor-02")).containsExactly(updated);
+        assertThat(occupancyStore.get(1L)).isSameAs(updated);
+    }
+
+    @Test
+    void remove_shouldDropSlotFromBothIndexes() {
+        // Act: Remove both slots of the sensor
+        occupancyStore.remove(1L);
+        occupancyStore.removeAll(List.of(slot2));
+
+        // Assert: Sensor is gone, unrelated slot stays
+        assertThat(occupancyStore.get(1L)).isNull();
+        assertThat(occupancyStore.slotsForSensor("sensor-01")).isEmpty();
+        assertThat(occupancyStore.size()).isEqualTo(1);
+    }
+
+    private static ParkingLot lot(long id) {
+        ParkingLot lot = new ParkingLot();
+        ReflectionTestUtils.setField(lot, "id", id);
+        return lot;
+    }
+
+    @Test
+    void reload_shouldCountSlotsPerLotIncludingEmptyLots() {
+        // Arrange: Lot 10 has two slots (one occupied), lot 20 has none
+        ParkingLot lot = lot(10L);
+        ParkingSlot free = slot(5L, null, false);
+        ParkingSlot taken = slot(6L, null, true);
+        free.setParkingLot(lot);
+        taken.setParkingLot(lot);
+        when(parkingSlotRepository.findAll()).thenReturn(List.of(free, taken));
+        when(parkingLotRepository.findAllIds()).thenReturn(List.of(10L, 20L));
+
+        // Act: Reload the store
+        occupancyStore.reload();
+
+        // Assert: Counters match the slots, empty lot reports zeros
+        assertThat(occupancyStore.availability(10L)).isEqualTo(new LotAvailability(10L, 2, 1, 1));
+        assertThat(occupancyStore.availability(20L)).isEqualTo(new LotAvailability(20L, 0, 0, 0));
+        assertThat(occupancyStore.availability(30L)).isNull();
+        assertThat(occupancyStore.allAvailability()).extracting(LotAvailability::lotId).containsExactly(10L, 20L);
+    }
+
+    @Test
+    void setOccupied_shouldMoveLotCountersOnTransitionsOnly() {
+        // Arrange: Slot 1 belongs to lot 10
+        ParkingSlot slot = slot(7L, "sensor-07", false);
+        slot.setParkingLot(lot(10L));
+        occupancyStore.put(slot);
+
+        // Act: Occupy twice (second is a repeat), then free once
+        occupancyStore.setOccupied(slot, true);
+        occupancyStore.setOccupied(slot, true);
+        LotAvailability afterOccupy = occupancyStore.availability(10L);
+        occupancyStore.setOccupied(slot, false);
+
+        // Assert: Counters moved by exactly one each way
+        assertThat(afterOccupy).isEqualTo(new LotAvailability(10L, 1, 1, 0));
+        assertThat(occupancyStore.availability(10L)).isEqualTo(new LotAvailability(10L, 1, 0, 1));
+    }
+
+    @Test
+    void putAndRemove_shouldKeepLotCountersInSync() {
+        // Arrange: Slot in lot 10, then replaced by an occupied copy
+        ParkingSlot original = slot(8L, null, false);
+        original.setParkingLot(lot(10L));
+        occupancyStore.put(original);
+        ParkingSlot replacement = slot(8L, null, true);
+        replacement.setParkingLot(lot(10L));
+
+        // Act: Replace, then mutate the stale instance, then remove
+        occupancyStore.put(replacement);
+        occupancyStore.setOccupied(original, true);
+        LotAvailability afterReplace = occupancyStore.availability(10L);
+        occupancyStore.remove(8L);
+
+        // Assert: Stale instance is not counted; removal empties the lot
+        assertThat(afterReplace).isEqualTo(new LotAvailability(10L, 1, 1, 0));
+        assertThat(occupancyStore.availability(10L)).isEqualTo(new LotAvailability(10L, 0, 0, 0));
+    }
+
+    @Test
+    void setOccupiedIfNewer_shouldConvergeWhenCrossedChangesArriveInOppositeOrder() {
+        // Arrange: Two instances hold the same free slot; each takes an opposite reading
+        OccupancyStore other = new OccupancyStore(parkingSlotRepository, parkingLotRepository);
+        ParkingSlot otherSlot = slot(9L, "sensor-09", false);
+        ParkingSlot slot = slot(9L, "sensor-09", false);
+        occupancyStore.put(slot);
+        other.put(otherSlot);
+        occupancyStore.setOccupied(slot, true);
+        long version = occupancyStore.stamp(slot, "node-a");
+        other.setOccupied(otherSlot, true);
+        other.stamp(otherSlot, "node-b");
+        other.setOccupied(otherSlot, false);
+        long otherVersion = other.stamp(otherSlot, "node-b");
+
+        // Act: Each receives the other's change
+        occupancyStore.setOccupiedIfNewer(slot, false, otherVersion, "node-b");
+        other.setOccupiedIfNewer(otherSlot, true, version, "node-a");
+
+        // Assert: Both settle on the same reading
+        assertThat(slot.getOccupied()).isEqualTo(otherSlot.getOccupied());
+    }
+
+    @Test
+    void setOccupiedIfNewer_shouldOrderEqualClocksByOrigin() {
+        // Arrange: Two changes with the same clock, applied in either order
+        ParkingSlot slot = slot(9L, "sensor-09", false);
+        occupancyStore.put(slot);
+        OccupancyStore other = new OccupancyStore(parkingSlotRepository, parkingLotRepository);
+        ParkingSlot otherSlot = slot(9L, "sensor-09", false);
+        other.put(otherSlot);
+
+        // Act: Opposite arrival orders
+        boolean firstApplied = occupancyStore.setOccupiedIfNewer(slot, true, 100L, "node-a");
+        boolean secondApplied = occupancyStore.setOccupiedIfNewer(slot, false, 100L, "node-b");
+        other.setOccupiedIfNewer(otherSlot, false, 100L, "node-b");
+        boolean staleApplied = other.setOccupiedIfNewer(otherSlot, true, 100L, "node-a");
+
+        // Assert: node-b wins the tie on both, the older one is skipped
+        assertThat(firstApplied).isTrue();
+        assertThat(secondApplied).isTrue();
+        assertThat(staleApplied).isFalse();
+        assertThat(slot.getOccupied()).isFalse();
+        assertThat(otherSlot.getOccupied()).isFalse();
+    }
+
+    @Test
+    void stamp_shouldStayAheadOfVersionsSeenFromOtherInstances() {
+        // Arrange: A change from an instance whose clock runs far ahead
+        long ahead = System.currentTimeMillis() + 60_000;
+        occupancyStore.setOccupiedIfNewer(slot1, true, ahead, "node-b");
+
+        // Act: A local change follows
+        occupancyStore.setOccupied(slot1, false);
+        long version = occupancyStore.stamp(slot1, "node-a");
+
+        // Assert: It is newer, so the other instance will take it
+        assertThat(version).isGreaterThan(ahead);
+    }
+}
@@ -0,0 +1,142 @@
+package com.smartpark.parking_backend.service;
+
+import com.smartpark.parking_backend.config.WriteBehindProperties;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.repository.ParkingSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyWriteBehindTest {
+
+    @Mock
+    private ParkingSlotRepository parkingSlotRepository;
+
+    @Mock
+    private OccupancyStore occupancyStore;
+
+    @Mock
+    private WriteBehindProperties properties;
+
+    private OccupancyWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(properties.isEnabled()).thenReturn(true);
+        lenient().when(properties.getFlushIntervalMs()).thenReturn(60_000L);
+        lenient().when(properties.getBatchSize()).thenReturn(100);
+        writeBehind = new OccupancyWriteBehind(parkingSlotRepository, occupancyStore, properties);
+    }
+
+    private ParkingSlot slot(long id, boolean occupied) {
+        ParkingSlot slot = new ParkingSlot();
+        ReflectionTestUtils.setField(slot, "id", id);
+        slot.setOccupied(occupied);
+        return slot;
+    }
+
+    @Test
+    void flush_shouldWriteOnlyTheLatestStatePerSlot() {
+        // Arrange: Slot flaps several times before the flush
+        writeBehind.start();
+        ParkingSlot slot = slot(1L, true);
+        when(occupancyStore.get(1L)).thenReturn(slot);
+        writeBehind.markDirty(List.of(slot));
+        slot.setOccupied(false);
+        writeBehind.markDirty(List.of(slot));
+        slot.setOccupied(true);
+        writeBehind.markDirty(List.of(slot));
+
+        // Act: Flush the buffer
+        int written = writeBehind.flush();
+
+        // Assert: One write with the last state
+        assertThat(written).isEqualTo(1);
+        verify(parkingSlotRepository, times(1)).updateOccupancy(List.of(1L), true);
+        verify(parkingSlotRepository, never()).updateOccupancy(any(), eq(false));
+        assertThat(writeBehind.pendingCount()).isZero();
+        writeBehind.shutdown();
+    }
+
+    @Test
+    void flush_shouldGroupSlotsByStateAndSkipDeletedOnes() {
+        // Arrange: Two occupied, one free, one deleted since it was marked
+        writeBehind.start();
+        ParkingSlot a = slot(1L, true);
+        ParkingSlot b = slot(2L, true);
+        ParkingSlot c = slot(3L, false);
+        ParkingSlot gone = slot(4L, true);
+        when(occupancyStore.get(1L)).thenReturn(a);
+        when(occupancyStore.get(2L)).thenReturn(b);
+        when(occupancyStore.get(3L)).thenReturn(c);
+        when(occupancyStore.get(4L)).thenReturn(null);
+        writeBehind.markDirty(List.of(a, b, c, gone));
+
+        // Act: Flush the buffer
+        writeBehind.flush();
+
+        // Assert: One statement per state, deleted slot not written
+        verify(parkingSlotRepository, times(1)).updateOccupancy(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(1L, 2L))), eq(true));
+        verify(parkingSlotRepository, times(1)).updateOccupancy(List.of(3L), false);
+        writeBehind.shutdown();
+    }
+
+    @Test
+    void flush_shouldSplitLargeBuffersIntoBatches() {
+        // Arrange: Batch size of two and three occupied slots
+        when(properties.getBatchSize()).thenReturn(2);
+        writeBehind.start();
+        for (long id = 1; id <= 3; id++) {
+            ParkingSlot slot = slot(id, true);
+            lenient().when(occupancyStore.get(id)).thenReturn(slot);
+            writeBehind.markDirty(List.of(slot));
+        }
+
+        // Act: Flush whatever the size trigger left behind
+        writeBehind.shutdown();
+
+        // Assert: All three slots written, never more than two per statement
+        verify(parkingSlotRepository, atLeast(2)).updateOccupancy(argThat(ids -> ids.size() <= 2), eq(true));
+        assertThat(writeBehind.pendingCount()).isZero();
+    }
+
+    @Test
+    void flush_shouldKeepSlotsDirtyWhenTheWriteFails() {
+        // Arrange: Database rejects the update
+        writeBehind.start();
+        ParkingSlot slot = slot(1L, true);
+        when(occupancyStore.get(1L)).thenReturn(slot);
+        when(parkingSlotRepository.updateOccupancy(any(), anyBoolean())).thenThrow(new RuntimeException("db down"));
+        writeBehind.markDirty(List.of(slot));
+
+        // Act & Assert: Failure surfaces and the slot stays queued
+        assertThatThrownBy(() -> writeBehind.flush()).hasMessage("db down");
+        assertThat(writeBehind.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void markDirty_shouldWriteImmediatelyWhenDisabled() {
+        // Arrange: Write-behind switched off
+        when(properties.isEnabled()).thenReturn(false);
+        writeBehind.start();
+        ParkingSlot slot = slot(1L, false);
+        when(occupancyStore.get(1L)).thenReturn(slot);
+
+        // Act: Mark a change
+        writeBehind.markDirty(List.of(slot));
+
+        // Assert: Written synchronously
+        verify(parkingSlotRepository, times(1)).updateOccupancy(List.of(1L), false);
+    }
+}
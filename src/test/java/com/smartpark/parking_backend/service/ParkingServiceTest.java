@@ -1,19 +1,34 @@
 package com.smartpark.parking_backend.service;
 
+import com.smartpark.parking_backend.bus.SlotChange;
+import com.smartpark.parking_backend.bus.SlotUpdateBus;
+import com.smartpark.parking_backend.dto.LotAvailability;
+import com.smartpark.parking_backend.dto.LotView;
+import com.smartpark.parking_backend.dto.NearbyLot;
+import com.smartpark.parking_backend.dto.SlotPage;
+import com.smartpark.parking_backend.dto.SlotView;
 import com.smartpark.parking_backend.model.ParkingLot;
 import com.smartpark.parking_backend.model.ParkingSlot;
 import com.smartpark.parking_backend.repository.ParkingLotRepository;
 import com.smartpark.parking_backend.repository.ParkingSlotRepository;
+import com.smartpark.parking_backend.websocket.SlotWebSocketPublisher;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -29,6 +44,21 @@ class ParkingServiceTest {
     @Mock
     private ParkingLotRepository parkingLotRepository;
 
+    @Mock
+    private SlotWebSocketPublisher slotWebSocketPublisher;
+
+    @Mock
+    private OccupancyStore occupancyStore;
+
+    @Mock
+    private OccupancyWriteBehind occupancyWriteBehind;
+
+    @Mock
+    private LotSpatialIndex lotSpatialIndex;
+
+    @Mock
+    private SlotUpdateBus slotUpdateBus;
+
     @InjectMocks
     private ParkingService parkingService;
 
@@ -53,33 +83,50 @@ class ParkingServiceTest {
     // Lot Management Tests
 
     @Test
-    void getAllLots_shouldReturnAllParkingLots() {
-        // Arrange: Mock repository returns two parking lots
-        ParkingLot lot1 = new ParkingLot();
-        lot1.setName("Lot 1");
-        ParkingLot lot2 = new ParkingLot();
-        lot2.setName("Lot 2");
-        when(parkingLotRepository.findAll()).thenReturn(Arrays.asList(lot1, lot2));
+    void getAllLotViews_shouldReturnEmptyListWhenNoLotsExist() {
+        // Arrange: Projection returns no lots
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of());
 
         // Act: Call service method
-        List<ParkingLot> result = parkingService.getAllLots();
+        List<LotView> result = parkingService.getAllLotViews(true);
 
-        // Assert: Verify correct number of lots returned
-        assertThat(result).hasSize(2);
-        assertThat(result).containsExactly(lot1, lot2);
-        verify(parkingLotRepository, times(1)).findAll();
+        // Assert: Verify empty list is returned without loading entities
+        assertThat(result).isEmpty();
+        verify(parkingLotRepository, never()).findAll();
     }
 
     @Test
-    void getAllLots_shouldReturnEmptyListWhenNoLotsExist() {
-        // Arrange: Mock repository returns empty list
-        when(parkingLotRepository.findAll()).thenReturn(Arrays.asList());
-
-        // Act: Call service method
-        List<ParkingLot> result = parkingService.getAllLots();
+    void getAllLotViews_shouldUseProjectionQuery() {
+        // Arrange: Projection returns one flat lot
+        LotView view = new LotView(1L, "Test Garage", "Campus", 45.450708, 4.387879);
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of(view));
+
+        // Act: Get lot views without slots
+        List<LotView> result = parkingService.getAllLotViews(false);
+
+        // Assert: Views come straight from the projection, no entities are loaded
+        assertThat(result).containsExactly(view);
+        verify(parkingLotRepository, never()).findAll();
+        verifyNoInteractions(occupancyStore);
+    }
 
-        // Assert: Verify empty list is returned
-        assertThat(result).isEmpty();
+    @Test
+    void getAllLotViews_shouldAttachSlotsFromStoreWhenAsked() {
+        // Arrange: Two lots, the store holds one slot of the first
+        ReflectionTestUtils.setField(testLot, "id", 1L);
+        ReflectionTestUtils.setField(testSlot, "id", 5L);
+        when(parkingLotRepository.findAllViews()).thenReturn(List.of(
+            new LotView(1L, "Test Garage", "Campus", 45.450708, 4.387879),
+            new LotView(2L, "Empty Garage", "Campus", 45.46, 4.39)));
+        when(occupancyStore.allSlots()).thenReturn(List.of(testSlot));
+
+        // Act: Get lot views with slots
+        List<LotView> result = parkingService.getAllLotViews(true);
+
+        // Assert: Each lot carries its own slots, an empty lot an empty list
+        assertThat(result.get(0).parkingSlots()).containsExactly(new SlotView(5L, 1L, 1, false));
+        assertThat(result.get(1).parkingSlots()).isEmpty();
+        verify(parkingLotRepository, never()).findAll();
     }
 
     @Test
@@ -125,21 +172,157 @@ class ParkingServiceTest {
     // Slot Management Tests
 
     @Test
-    void getAllSlots_shouldReturnAllParkingSlots() {
-        // Arrange: Mock repository returns multiple slots
-        ParkingSlot slot1 = new ParkingSlot();
-        slot1.setSlotNumber(1);
-        ParkingSlot slot2 = new ParkingSlot();
-        slot2.setSlotNumber(2);
-        when(parkingSlotRepository.findAll()).thenReturn(Arrays.asList(slot1, slot2));
+    void getAllSlotViews_shouldReturnFlatSlotsFromStoreSortedById() {
+        // Arrange: Store holds two slots of one lot, out of order
+        ReflectionTestUtils.setField(testLot, "id", 7L);
+        ParkingSlot second = new ParkingSlot();
+        ReflectionTestUtils.setField(second, "id", 2L);
+        second.setSlotNumber(2);
+        second.setOccupied(true);
+        second.setParkingLot(testLot);
+        ReflectionTestUtils.setField(testSlot, "id", 1L);
+        when(occupancyStore.allSlots()).thenReturn(Arrays.asList(second, testSlot));
+
+        // Act: Get slot views
+        List<SlotView> result = parkingService.getAllSlotViews();
+
+        // Assert: Flat views with the lot id, no database read
+        assertThat(result).containsExactly(new SlotView(1L, 7L, 1, false), new SlotView(2L, 7L, 2, true));
+        verifyNoInteractions(parkingSlotRepository);
+    }
+
+    @Test
+    void getSlotPage_shouldReturnCursorWhenMoreRowsExist() {
+        // Arrange: Query returns one row more than the limit
+        when(parkingSlotRepository.findViews(7L, null, 10L, 3)).thenReturn(Arrays.asList(
+            new SlotView(11L, 7L, 1, false), new SlotView(12L, 7L, 2, false), new SlotView(13L, 7L, 3, false)));
 
-        // Act: Get all slots
-        List<ParkingSlot> result = parkingService.getAllSlots();
+        // Act: Ask for two slots after id 10
+        SlotPage page = parkingService.getSlotPage(7L, null, null, 10L, 2);
 
-        // Assert: Verify both slots are returned
-        assertThat(result).hasSize(2);
-        assertThat(result.get(0).getSlotNumber()).isEqualTo(1);
-        assertThat(result.get(1).getSlotNumber()).isEqualTo(2);
+        // Assert: Two slots, cursor at the last one returned
+        assertThat(page.slots()).extracting(SlotView::id).containsExactly(11L, 12L);
+        assertThat(page.nextCursor()).isEqualTo(12L);
+    }
+
+    @Test
+    void getSlotPage_shouldApplyStoreOccupancyOverDatabaseRows() {
+        // Arrange: Database still says free, the store already saw the car arrive
+        ParkingSlot held = new ParkingSlot();
+        held.setOccupied(true);
+        when(parkingSlotRepository.findViews(null, "sensor-01", Long.MIN_VALUE, 11)).thenReturn(Arrays.asList(
+            new SlotView(1L, 7L, 1, false), new SlotView(2L, 7L, 2, false)));
+        when(occupancyStore.get(1L)).thenReturn(held);
+        when(occupancyStore.get(2L)).thenReturn(null);
+
+        // Act: First page of the sensor's slots
+        SlotPage page = parkingService.getSlotPage(null, null, "sensor-01", null, 10);
+
+        // Assert: Slot 1 shows the store's state, no next page
+        assertThat(page.slots()).containsExactly(new SlotView(1L, 7L, 1, true), new SlotView(2L, 7L, 2, false));
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getSlotPage_shouldFilterOccupancyFromStoreIncludingUnflushedChanges() {
+        // Arrange: Slot 1 was just freed and not yet flushed, slot 2 is taken, slot 3 free in another lot
+        ReflectionTestUtils.setField(testLot, "id", 7L);
+        ParkingLot otherLot = new ParkingLot();
+        ReflectionTestUtils.setField(otherLot, "id", 8L);
+        ParkingSlot justFreed = slotWithId(1L, testLot, false);
+        ParkingSlot taken = slotWithId(2L, testLot, true);
+        ParkingSlot elsewhere = slotWithId(3L, otherLot, false);
+        ParkingSlot laterFree = slotWithId(4L, testLot, false);
+        when(occupancyStore.allSlots()).thenReturn(List.of(laterFree, taken, elsewhere, justFreed));
+
+        // Act: Pages of one free slot in lot 7
+        SlotPage first = parkingService.getSlotPage(7L, false, null, null, 1);
+        SlotPage second = parkingService.getSlotPage(7L, false, null, first.nextCursor(), 1);
+
+        // Assert: The unflushed slot is on the first page, the next one follows, no database read
+        assertThat(first.slots()).containsExactly(new SlotView(1L, 7L, 1, false));
+        assertThat(first.nextCursor()).isEqualTo(1L);
+        assertThat(second.slots()).containsExactly(new SlotView(4L, 7L, 4, false));
+        assertThat(second.nextCursor()).isNull();
+        verifyNoInteractions(parkingSlotRepository);
+    }
+
+    private static ParkingSlot slotWithId(long id, ParkingLot lot, boolean occupied) {
+        ParkingSlot slot = new ParkingSlot();
+        ReflectionTestUtils.setField(slot, "id", id);
+        slot.setSlotNumber((int) id);
+        slot.setParkingLot(lot);
+        slot.setOccupied(occupied);
+        return slot;
+    }
+
+    @Test
+    void getSlotPage_shouldRejectInvalidLimit() {
+        // Act & Assert: Zero and oversized limits are rejected before querying
+        assertThatThrownBy(() -> parkingService.getSlotPage(null, null, null, null, 0))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> parkingService.getSlotPage(null, null, null, null, ParkingService.MAX_PAGE_SIZE + 1))
+            .isInstanceOfSatisfying(ResponseStatusException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        verifyNoInteractions(parkingSlotRepository);
+    }
+
+    @Test
+    void getLotAvailability_shouldReadCountersFromStore() {
+        // Arrange: Store has counters for lot 1
+        when(occupancyStore.availability(1L)).thenReturn(new LotAvailability(1L, 3, 1, 2));
+
+        // Act: Read availability
+        LotAvailability result = parkingService.getLotAvailability(1L);
+
+        // Assert: No repository access at all
+        assertThat(result.free()).isEqualTo(2);
+        verifyNoInteractions(parkingSlotRepository, parkingLotRepository);
+    }
+
+    @Test
+    void getLotAvailability_shouldThrowExceptionWhenLotUnknown() {
+        // Arrange: Store does not know the lot
+        when(occupancyStore.availability(999L)).thenReturn(null);
+
+        // Act & Assert: Reported as a missing resource
+        assertThatThrownBy(() -> parkingService.getLotAvailability(999L))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void findNearbyLots_shouldFilterByLiveFreeCount() {
+        // Arrange: Two lots in range, only the farther one has free slots
+        LotSpatialIndex.Location full = new LotSpatialIndex.Location(1L, "Full", null, 45.45, 4.38);
+        LotSpatialIndex.Location open = new LotSpatialIndex.Location(2L, "Open", null, 45.46, 4.38);
+        when(lotSpatialIndex.within(45.45, 4.38, 2000)).thenReturn(List.of(
+                new LotSpatialIndex.Hit(full, 10),
+                new LotSpatialIndex.Hit(open, 900)));
+        when(occupancyStore.availability(1L)).thenReturn(new LotAvailability(1L, 3, 3, 0));
+        when(occupancyStore.availability(2L)).thenReturn(new LotAvailability(2L, 5, 2, 3));
+
+        // Act: Ask for lots with at least one free slot
+        List<NearbyLot> result = parkingService.findNearbyLots(45.45, 4.38, 2000, 1);
+
+        // Assert: Full lot is skipped, counts come from the store
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).lotId()).isEqualTo(2L);
+        assertThat(result.get(0).free()).isEqualTo(3);
+        assertThat(result.get(0).distanceMeters()).isEqualTo(900);
+        verifyNoInteractions(parkingLotRepository);
+    }
+
+    @Test
+    void findNearbyLots_shouldRejectInvalidInput() {
+        // Act & Assert: Out-of-range latitude and non-positive radius
+        assertThatThrownBy(() -> parkingService.findNearbyLots(91, 0, 1000, 0))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> parkingService.findNearbyLots(45, 4, 0, 0))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
     }
 
     @Test
@@ -170,6 +353,38 @@ class ParkingServiceTest {
                 .hasMessage("Lot not found");
     }
 
+    @Test
+    void addSlotsToLot_shouldSaveAllAndBroadcastOnce() {
+        // Arrange: Lot exists and two slots are provisioned
+        ParkingSlot second = new ParkingSlot();
+        second.setSlotNumber(2);
+        List<ParkingSlot> slots = List.of(testSlot, second);
+        when(parkingLotRepository.findById(1L)).thenReturn(Optional.of(testLot));
+        when(parkingSlotRepository.saveAll(slots)).thenReturn(slots);
+
+        // Act: Add both slots in one call
+        List<ParkingSlot> result = parkingService.addSlotsToLot(1L, slots);
+
+        // Assert: One saveAll, no per-slot save, one broadcast for everything
+        assertThat(result).hasSize(2);
+        assertThat(second.getParkingLot()).isEqualTo(testLot);
+        verify(parkingSlotRepository, times(1)).saveAll(slots);
+        verify(parkingSlotRepository, never()).save(any());
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(slots, List.of());
+    }
+
+    @Test
+    void addSlotsToLot_shouldThrowExceptionWhenLotNotFound() {
+        // Arrange: Mock lot does not exist
+        when(parkingLotRepository.findById(999L)).thenReturn(Optional.empty());
+
+        // Act & Assert: Nothing is saved
+        assertThatThrownBy(() -> parkingService.addSlotsToLot(999L, List.of(testSlot)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Lot not found");
+        verify(parkingSlotRepository, never()).saveAll(any());
+    }
+
     @Test
     void deleteSlot_shouldCallRepositoryDeleteById() {
         // Arrange: Setup slot ID to delete
@@ -298,4 +513,298 @@ class ParkingServiceTest {
         // Assert: Verify save was called three times for status changes
         verify(parkingSlotRepository, times(3)).save(testSlot);
     }
+
+    // WebSocket Delta Tests
+
+    @Test
+    void updateSlotStatus_shouldBroadcastOnlyTheChangedSlot() {
+        // Arrange: Mock slot lookup and save
+        when(parkingSlotRepository.findById(1L)).thenReturn(Optional.of(testSlot));
+        when(parkingSlotRepository.save(testSlot)).thenReturn(testSlot);
+
+        // Act: Change one slot
+        parkingService.updateSlotStatus(1L, true);
+
+        // Assert: Delta carries the single slot and no full reload happens
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(testSlot), List.of());
+        verify(parkingSlotRepository, never()).findAll();
+    }
+
+    @Test
+    void updateSlotStatus_shouldPublishChangeToOtherInstances() {
+        // Arrange: Mock slot lookup and save
+        when(parkingSlotRepository.findById(1L)).thenReturn(Optional.of(testSlot));
+        when(parkingSlotRepository.save(testSlot)).thenReturn(testSlot);
+        when(occupancyStore.stamp(eq(testSlot), anyString())).thenReturn(42L);
+
+        // Act: Change one slot
+        parkingService.updateSlotStatus(1L, true);
+
+        // Assert: The same change goes on the bus as plain values, with its version
+        ArgumentCaptor<SlotChange> change = ArgumentCaptor.forClass(SlotChange.class);
+        verify(slotUpdateBus, times(1)).publish(change.capture());
+        assertThat(change.getValue().upserts()).containsExactly(SlotChange.SlotState.of(testSlot, 42L));
+        assertThat(change.getValue().removed()).isEmpty();
+    }
+
+    @Test
+    void onSlotChange_shouldApplyRemoteOccupancyAndBroadcastLocally() {
+        // Arrange: Slot is held here as free, another instance reports it occupied
+        ReflectionTestUtils.setField(testSlot, "id", 1L);
+        ReflectionTestUtils.setField(testLot, "id", 7L);
+        when(occupancyStore.get(1L)).thenReturn(testSlot);
+        when(occupancyStore.setOccupiedIfNewer(testSlot, true, 5L, "other-instance")).thenReturn(true);
+        SlotChange change = new SlotChange("other-instance",
+                List.of(new SlotChange.SlotState(1L, 7L, 1, "sensor-test-01", true, 5L)), List.of(),
+                List.of(), List.of());
+        long before = parkingService.getDataVersion();
+
+        // Act: Receive the change from the bus
+        parkingService.onSlotChange(change);
+
+        // Assert: Store updated in place, local clients told, nothing written or republished
+        verify(occupancyStore, times(1)).setOccupiedIfNewer(testSlot, true, 5L, "other-instance");
+        verify(occupancyStore, never()).put(any());
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(testSlot), List.of());
+        verifyNoInteractions(slotUpdateBus, occupancyWriteBehind);
+        assertThat(parkingService.getDataVersion()).isGreaterThan(before);
+    }
+
+    @Test
+    void onSlotChange_shouldReloadSlotsThatChangedShapeElsewhere() {
+        // Arrange: Another instance moved the slot to a new sensor
+        ReflectionTestUtils.setField(testSlot, "id", 1L);
+        ReflectionTestUtils.setField(testLot, "id", 7L);
+        when(occupancyStore.get(1L)).thenReturn(testSlot);
+        ParkingSlot reloaded = new ParkingSlot();
+        reloaded.setSensorId("sensor-test-02");
+        when(parkingSlotRepository.findById(1L)).thenReturn(Optional.of(reloaded));
+        SlotChange change = new SlotChange("other-instance",
+                List.of(new SlotChange.SlotState(1L, 7L, 1, "sensor-test-02", false, 5L)), List.of(),
+                List.of(), List.of());
+
+        // Act: Receive the change from the bus
+        parkingService.onSlotChange(change);
+
+        // Assert: Fresh row replaces the held slot
+        verify(occupancyStore, times(1)).put(reloaded);
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(reloaded), List.of());
+    }
+
+    @Test
+    void subscribeToSlotChanges_shouldSubscribeAsTheOriginItPublishesWith() {
+        // Arrange: Capture the subscription and what this instance puts on the bus
+        when(parkingSlotRepository.findById(1L)).thenReturn(Optional.of(testSlot));
+        when(parkingSlotRepository.save(testSlot)).thenReturn(testSlot);
+        ArgumentCaptor<String> subscribedAs = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SlotChange> change = ArgumentCaptor.forClass(SlotChange.class);
+
+        // Act: Subscribe, then change one slot
+        parkingService.subscribeToSlotChanges();
+        parkingService.updateSlotStatus(1L, true);
+
+        // Assert: The bus can tell the change is this instance's own and not hand it back
+        verify(slotUpdateBus).subscribe(subscribedAs.capture(), any());
+        verify(slotUpdateBus).publish(change.capture());
+        assertThat(change.getValue().origin()).isEqualTo(subscribedAs.getValue());
+    }
+
+    @Test
+    void onSlotChange_shouldSkipOccupancyOlderThanTheHeldOne() {
+        // Arrange: The store already holds a newer reading for the slot
+        ReflectionTestUtils.setField(testSlot, "id", 1L);
+        ReflectionTestUtils.setField(testLot, "id", 7L);
+        when(occupancyStore.get(1L)).thenReturn(testSlot);
+        when(occupancyStore.setOccupiedIfNewer(testSlot, true, 5L, "other-instance")).thenReturn(false);
+        SlotChange change = new SlotChange("other-instance",
+                List.of(new SlotChange.SlotState(1L, 7L, 1, "sensor-test-01", true, 5L)), List.of(),
+                List.of(), List.of());
+        long before = parkingService.getDataVersion();
+
+        // Act: The stale change arrives late
+        parkingService.onSlotChange(change);
+
+        // Assert: Nothing is broadcast and the data version stays put
+        verifyNoInteractions(slotWebSocketPublisher);
+        assertThat(parkingService.getDataVersion()).isEqualTo(before);
+    }
+
+    @Test
+    void onSlotChange_shouldCountAndIndexLotsCreatedElsewhere() {
+        // Arrange: Another instance created a lot
+        SlotChange change = new SlotChange("other-instance", List.of(), List.of(),
+                List.of(new SlotChange.LotState(8L, "North", "Campus", 45.45, 4.38)), List.of());
+        long before = parkingService.getDataVersion();
+
+        // Act: Receive the change from the bus
+        parkingService.onSlotChange(change);
+
+        // Assert: The lot is counted and can be found nearby, no database read
+        verify(occupancyStore, times(1)).registerLot(8L);
+        verify(lotSpatialIndex, times(1)).put(8L, "North", "Campus", 45.45, 4.38);
+        verifyNoInteractions(parkingLotRepository, parkingSlotRepository);
+        assertThat(parkingService.getDataVersion()).isGreaterThan(before);
+    }
+
+    @Test
+    void onSlotChange_shouldDropLotsDeletedElsewhereAfterTheirSlots() {
+        // Arrange: Another instance deleted lot 7 with its one slot
+        ReflectionTestUtils.setField(testSlot, "id", 1L);
+        ReflectionTestUtils.setField(testLot, "id", 7L);
+        when(occupancyStore.get(1L)).thenReturn(testSlot);
+        SlotChange change = new SlotChange("other-instance", List.of(),
+                List.of(new SlotChange.SlotState(1L, 7L, 1, "sensor-test-01", false, 0L)),
+                List.of(), List.of(7L));
+
+        // Act: Receive the change from the bus
+        parkingService.onSlotChange(change);
+
+        // Assert: Slot removed first, then the lot leaves the counters and the index
+        InOrder order = inOrder(occupancyStore, lotSpatialIndex);
+        order.verify(occupancyStore).remove(1L);
+        order.verify(occupancyStore).removeLot(7L);
+        order.verify(lotSpatialIndex).remove(7L);
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(), List.of(testSlot));
+    }
+
+    @Test
+    void createParkingLot_shouldPublishLotToOtherInstances() {
+        // Arrange: Saved lot gets an id
+        ReflectionTestUtils.setField(testLot, "id", 8L);
+        when(parkingLotRepository.save(testLot)).thenReturn(testLot);
+
+        // Act: Create the lot
+        parkingService.createParkingLot(testLot);
+
+        // Assert: The lot goes on the bus with its location
+        ArgumentCaptor<SlotChange> change = ArgumentCaptor.forClass(SlotChange.class);
+        verify(slotUpdateBus, times(1)).publish(change.capture());
+        assertThat(change.getValue().lots())
+            .containsExactly(new SlotChange.LotState(8L, "Test Garage", "Test Address", 45.450708, 4.387879));
+    }
+
+    @Test
+    void deleteParkingLot_shouldPublishRemovalToOtherInstances() {
+        // Arrange: Lot owns one slot
+        when(parkingSlotRepository.findAllByParkingLotId(1L)).thenReturn(List.of(testSlot));
+
+        // Act: Delete the lot
+        parkingService.deleteParkingLot(1L);
+
+        // Assert: One change carries the slot and the lot
+        ArgumentCaptor<SlotChange> change = ArgumentCaptor.forClass(SlotChange.class);
+        verify(slotUpdateBus, times(1)).publish(change.capture());
+        assertThat(change.getValue().removed()).containsExactly(SlotChange.SlotState.of(testSlot, 0));
+        assertThat(change.getValue().removedLots()).containsExactly(1L);
+    }
+
+    @Test
+    void deleteSlot_shouldBroadcastRemoval() {
+        // Arrange: Slot exists before deletion
+        when(parkingSlotRepository.findById(1L)).thenReturn(Optional.of(testSlot));
+
+        // Act: Delete the slot
+        parkingService.deleteSlot(1L);
+
+        // Assert: Removal is broadcast as a delta
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(), List.of(testSlot));
+    }
+
+    @Test
+    void deleteParkingLot_shouldBroadcastRemovalOfItsSlots() {
+        // Arrange: Lot owns one slot
+        when(parkingSlotRepository.findAllByParkingLotId(1L)).thenReturn(List.of(testSlot));
+
+        // Act: Delete the lot
+        parkingService.deleteParkingLot(1L);
+
+        // Assert: All slots of the lot are reported as removed
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(), List.of(testSlot));
+    }
+
+    // Sensor Update Tests (occupancy store)
+
+    @Test
+    void updateSlotsStatusBySensorId_shouldApplyInStoreAndQueueChangedSlots() {
+        // Arrange: Sensor is bound to one slot that flips
+        when(occupancyStore.slotsForSensor("sensor-test-01")).thenReturn(List.of(testSlot));
+        when(occupancyStore.setOccupied(List.of(testSlot), true)).thenReturn(List.of(testSlot));
+
+        // Act: Apply sensor reading
+        int updated = parkingService.updateSlotsStatusBySensorId("sensor-test-01", true);
+
+        // Assert: No lookup query, write handed to write-behind, one delta
+        assertThat(updated).isEqualTo(1);
+        verify(parkingSlotRepository, never()).findAllBySensorId(any());
+        verify(parkingSlotRepository, never()).updateOccupancy(any(), anyBoolean());
+        verify(occupancyWriteBehind, times(1)).markDirty(List.of(testSlot));
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(testSlot), List.of());
+    }
+
+    @Test
+    void updateSlotsStatusBySensorId_shouldSkipWriteWhenStateIsUnchanged() {
+        // Arrange: Slot already has the reported state
+        when(occupancyStore.slotsForSensor("sensor-test-01")).thenReturn(List.of(testSlot));
+        when(occupancyStore.setOccupied(List.of(testSlot), false)).thenReturn(List.of());
+
+        // Act: Apply repeated reading
+        int updated = parkingService.updateSlotsStatusBySensorId("sensor-test-01", false);
+
+        // Assert: Sensor still counts as matched, nothing is written
+        assertThat(updated).isEqualTo(1);
+        verify(parkingSlotRepository, never()).updateOccupancy(any(), anyBoolean());
+    }
+
+    @Test
+    void getDataVersion_shouldMoveOnlyWhenDataChanges() {
+        // Arrange: One reading that changes the slot, one that repeats it
+        when(occupancyStore.slotsForSensor("sensor-test-01")).thenReturn(List.of(testSlot));
+        when(occupancyStore.setOccupied(List.of(testSlot), true)).thenReturn(List.of(testSlot), List.of());
+        long before = parkingService.getDataVersion();
+
+        // Act: Apply the change, then the repeat
+        parkingService.updateSlotsStatusBySensorId("sensor-test-01", true);
+        long afterChange = parkingService.getDataVersion();
+        parkingService.updateSlotsStatusBySensorId("sensor-test-01", true);
+
+        // Assert: Version moved once
+        assertThat(afterChange).isGreaterThan(before);
+        assertThat(parkingService.getDataVersion()).isEqualTo(afterChange);
+    }
+
+    @Test
+    void updateSlotsStatusBySensorId_shouldReturnZeroForUnknownSensor() {
+        // Arrange: Store has no slot for the sensor
+        when(occupancyStore.slotsForSensor("sensor-404")).thenReturn(List.of());
+
+        // Act & Assert: Nothing matched
+        assertThat(parkingService.updateSlotsStatusBySensorId("sensor-404", true)).isZero();
+        verifyNoInteractions(slotWebSocketPublisher);
+    }
+
+    @Test
+    void updateSlotsStatusBySensorIds_shouldReportMatchedSensors() {
+        // Arrange: Only one of two sensors is known
+        when(occupancyStore.slotsForSensor("sensor-test-01")).thenReturn(List.of(testSlot));
+        when(occupancyStore.slotsForSensor("sensor-404")).thenReturn(List.of());
+        when(occupancyStore.setOccupied(List.of(testSlot), true)).thenReturn(List.of(testSlot));
+
+        // Act: Apply a batch
+        Set<String> matched = parkingService.updateSlotsStatusBySensorIds(Map.of("sensor-test-01", true, "sensor-404", false));
+
+        // Assert: Known sensor is reported and broadcast once
+        assertThat(matched).containsExactly("sensor-test-01");
+        verify(slotWebSocketPublisher, times(1)).broadcastChanges(List.of(testSlot), List.of());
+    }
+
+    @Test
+    void updateSlotStatusBySlotIdUsingSensor_shouldThrowWhenSlotIsNotInStore() {
+        // Arrange: Store does not know the slot
+        when(occupancyStore.get(999L)).thenReturn(null);
+
+        // Act & Assert: Same error as the database path
+        assertThatThrownBy(() -> parkingService.updateSlotStatusBySlotIdUsingSensor(999L, true))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Slot not Found");
+    }
 }
@@ -0,0 +1,622 @@
+package com.smartpark.parking_backend.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartpark.parking_backend.codec.CborSlotCodec;
+import com.smartpark.parking_backend.codec.JsonSlotCodec;
+import com.smartpark.parking_backend.codec.SlotCodecs;
+import com.smartpark.parking_backend.config.WebSocketProperties;
+import com.smartpark.parking_backend.dto.SlotView;
+import com.smartpark.parking_backend.model.ParkingLot;
+import com.smartpark.parking_backend.model.ParkingSlot;
+import com.smartpark.parking_backend.service.OccupancyStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SlotWebSocketPublisherTest {
+
+    private ObjectMapper objectMapper;
+    private SlotCodecs codecs;
+    private WebSocketProperties properties;
+    private OccupancyStore occupancyStore;
+    private SlotWebSocketPublisher publisher;
+    private ParkingSlot slot;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = spy(new ObjectMapper());
+        codecs = new SlotCodecs(List.of(new JsonSlotCodec(objectMapper), new CborSlotCodec()));
+        properties = mock(WebSocketProperties.class);
+        when(properties.getSenderThreads()).thenReturn(2);
+        when(properties.getBufferSizeLimit()).thenReturn(1_000_000);
+        when(properties.getSendTimeLimitMs()).thenReturn(5_000L);
+        when(properties.getOverflow()).thenReturn("snapshot");
+        when(properties.getResumeBufferSize()).thenReturn(4);
+        occupancyStore = mock(OccupancyStore.class);
+        publisher = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+
+        slot = new ParkingSlot();
+        slot.setSlotNumber(1);
+        slot.setOccupied(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    private WebSocketSession openSession() {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    // session whose first send blocks until the latch is released
+    private WebSocketSession stalledSession(CountDownLatch release) throws Exception {
+        WebSocketSession session = openSession();
+        AtomicBoolean first = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    // session whose sends block until it is closed, like a socket with a full TCP window
+    private WebSocketSession stuckSession() throws Exception {
+        WebSocketSession session = openSession();
+        CountDownLatch closed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            closed.await(5, TimeUnit.SECONDS);
+            throw new IOException("Socket closed");
+        }).when(session).sendMessage(any());
+        doAnswer(invocation -> {
+            closed.countDown();
+            return null;
+        }).when(session).close(any());
+        return session;
+    }
+
+    private int deltaFrameLength() throws Exception {
+        return new ObjectMapper().writeValueAsString(SlotUpdateMessage.delta(publisher.currentVersion() + 1, List.of(slot), List.of())).length();
+    }
+
+    @Test
+    void broadcastChanges_shouldSerializeOnceForAllSessions() throws Exception {
+        // Arrange: Three connected dashboards
+        WebSocketSession first = openSession();
+        WebSocketSession second = openSession();
+        WebSocketSession third = openSession();
+        publisher.register(first);
+        publisher.register(second);
+        publisher.register(third);
+
+        // Act: Broadcast one slot update
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: Every session gets the same frame, serialized once
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(first, timeout(1000)).sendMessage(frames.capture());
+        verify(second, timeout(1000)).sendMessage(frames.capture());
+        verify(third, timeout(1000)).sendMessage(frames.capture());
+        assertThat(frames.getAllValues()).hasSize(3).allMatch(frame -> frame == frames.getAllValues().get(0));
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+    }
+
+    @Test
+    void broadcastChanges_shouldSkipSerializationWithoutSessions() throws Exception {
+        // Act: Broadcast with nobody connected
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: No serialization work is done
+        verify(objectMapper, never()).writeValueAsBytes(any());
+    }
+
+    @Test
+    void broadcastChanges_shouldDropSessionsThatFailToSend() throws Exception {
+        // Arrange: One session throws on send
+        WebSocketSession broken = openSession();
+        doThrow(new IOException("broken pipe")).when(broken).sendMessage(any());
+        publisher.register(broken);
+
+        // Act: Broadcast twice
+        publisher.broadcastChanges(List.of(slot), List.of());
+        verify(broken, timeout(1000)).sendMessage(any());
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: Broken session is not retried on the second broadcast
+        verify(broken, after(200).times(1)).sendMessage(any());
+    }
+
+    @Test
+    void broadcastChanges_shouldSendDeltaWithIncreasingVersion() throws Exception {
+        // Arrange: One connected client
+        WebSocketSession session = openSession();
+        publisher.register(session);
+
+        // Act: Two separate changes
+        publisher.broadcastChanges(List.of(slot), List.of());
+        publisher.broadcastChanges(List.of(), List.of(slot));
+
+        // Assert: Both frames are deltas, versions increase
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000).times(2)).sendMessage(frames.capture());
+        SlotUpdateMessage first = objectMapper.readValue(frames.getAllValues().get(0).getPayload(), SlotUpdateMessage.class);
+        SlotUpdateMessage second = objectMapper.readValue(frames.getAllValues().get(1).getPayload(), SlotUpdateMessage.class);
+        assertThat(first.type()).isEqualTo(SlotUpdateMessage.DELTA);
+        assertThat(first.slots()).hasSize(1);
+        assertThat(second.slots()).isEmpty();
+        assertThat(second.removed()).hasSize(1);
+        assertThat(second.version()).isGreaterThan(first.version());
+        assertThat(publisher.currentVersion()).isEqualTo(second.version());
+    }
+
+    @Test
+    void broadcastChanges_shouldIgnoreEmptyChanges() {
+        // Arrange: Remember the starting version
+        long start = publisher.currentVersion();
+
+        // Act: Broadcast nothing
+        publisher.broadcastChanges(List.of(), List.of());
+
+        // Assert: Version does not move
+        assertThat(publisher.currentVersion()).isEqualTo(start);
+    }
+
+    @Test
+    void broadcastChanges_shouldNotLetAStalledSessionDelayOthers() throws Exception {
+        // Arrange: One session hangs on send, one is healthy
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stalled = stalledSession(release);
+        WebSocketSession healthy = openSession();
+        publisher.register(stalled);
+        publisher.register(healthy);
+
+        // Act: Two changes while the first session is stuck
+        publisher.broadcastChanges(List.of(slot), List.of());
+        verify(stalled, timeout(1000)).sendMessage(any());
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: Healthy session got both frames while the other is still blocked
+        verify(healthy, timeout(1000).times(2)).sendMessage(any());
+        verify(stalled, times(1)).sendMessage(any());
+        release.countDown();
+        verify(stalled, timeout(1000).times(2)).sendMessage(any());
+    }
+
+    @Test
+    void broadcastChanges_shouldCloseSessionThatOverflowsInDropMode() throws Exception {
+        // Arrange: Buffer fits one frame and a half, overflow closes the session
+        when(properties.getBufferSizeLimit()).thenReturn(deltaFrameLength() * 3 / 2);
+        when(properties.getOverflow()).thenReturn("drop");
+        publisher.shutdown();
+        publisher = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stalled = stalledSession(release);
+        publisher.register(stalled);
+
+        // Act: First frame is in flight, the next two pile up
+        publisher.broadcastChanges(List.of(slot), List.of());
+        verify(stalled, timeout(1000)).sendMessage(any());
+        publisher.broadcastChanges(List.of(slot), List.of());
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: Session is closed and forgotten
+        verify(stalled, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(publisher.sessionCount()).isZero();
+        release.countDown();
+        verify(stalled, after(200).times(1)).sendMessage(any());
+    }
+
+    @Test
+    void broadcastChanges_shouldResyncWithSnapshotInSnapshotMode() throws Exception {
+        // Arrange: Buffer fits one frame and a half, overflow downgrades to a snapshot
+        when(properties.getBufferSizeLimit()).thenReturn(deltaFrameLength() * 3 / 2);
+        when(occupancyStore.allSlots()).thenReturn(List.of(slot));
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stalled = stalledSession(release);
+        publisher.register(stalled);
+        long start = publisher.currentVersion();
+
+        // Act: Overflow while the first frame is in flight, then let the client catch up
+        publisher.broadcastChanges(List.of(slot), List.of());
+        verify(stalled, timeout(1000)).sendMessage(any());
+        publisher.broadcastChanges(List.of(slot), List.of());
+        publisher.broadcastChanges(List.of(slot), List.of());
+        SessionOutbox outbox = publisher.outbox(stalled);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!outbox.resyncPending() && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        assertThat(outbox.resyncPending()).isTrue();
+        release.countDown();
+
+        // Assert: Backlog replaced by one snapshot at the latest version, session kept
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(stalled, timeout(1000).times(2)).sendMessage(frames.capture());
+        SlotUpdateMessage resync = objectMapper.readValue(frames.getAllValues().get(1).getPayload(), SlotUpdateMessage.class);
+        assertThat(resync.type()).isEqualTo(SlotUpdateMessage.SNAPSHOT);
+        assertThat(resync.version()).isEqualTo(start + 3);
+        assertThat(publisher.sessionCount()).isEqualTo(1);
+        verify(stalled, never()).close(any());
+    }
+
+    @Test
+    void broadcastChanges_shouldCloseSessionStuckLongerThanTimeLimit() throws Exception {
+        // Arrange: 50 ms send time limit
+        when(properties.getSendTimeLimitMs()).thenReturn(50L);
+        publisher.shutdown();
+        publisher = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession stalled = stalledSession(release);
+        publisher.register(stalled);
+
+        // Act: Send blocks past the limit, then another change arrives
+        publisher.broadcastChanges(List.of(slot), List.of());
+        verify(stalled, timeout(1000)).sendMessage(any());
+        Thread.sleep(100);
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: Session is evicted even in snapshot mode
+        verify(stalled, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(publisher.sessionCount()).isZero();
+        release.countDown();
+    }
+
+    @Test
+    void broadcastChanges_shouldEvictMoreStuckSessionsThanSenderThreads() throws Exception {
+        // Arrange: One sender thread, 100 ms send time limit, two stuck sessions ahead of a healthy one
+        when(properties.getSenderThreads()).thenReturn(1);
+        when(properties.getSendTimeLimitMs()).thenReturn(100L);
+        publisher.shutdown();
+        publisher = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+        WebSocketSession firstStuck = stuckSession();
+        WebSocketSession secondStuck = stuckSession();
+        WebSocketSession healthy = openSession();
+        publisher.register(firstStuck);
+        publisher.register(secondStuck);
+        publisher.register(healthy);
+
+        // Act: One change, no further traffic to notice the stuck sends on
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: Stuck sessions are closed without new frames and the healthy one still gets its delta
+        verify(firstStuck, timeout(2000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(secondStuck, timeout(2000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        verify(healthy, timeout(2000)).sendMessage(any());
+        assertThat(publisher.sessionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void broadcastChanges_shouldMergeChangesWithinOneTick() throws Exception {
+        // Arrange: 100 ms tick, two slots with ids
+        when(properties.getBroadcastTickMs()).thenReturn(100L);
+        publisher.shutdown();
+        publisher = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+        WebSocketSession session = openSession();
+        publisher.register(session);
+        ReflectionTestUtils.setField(slot, "id", 1L);
+        ParkingSlot other = new ParkingSlot();
+        ReflectionTestUtils.setField(other, "id", 2L);
+        long start = publisher.currentVersion();
+
+        // Act: Slot 1 flips three times, slot 2 once, all inside one tick
+        slot.setOccupied(true);
+        publisher.broadcastChanges(List.of(slot), List.of());
+        slot.setOccupied(false);
+        publisher.broadcastChanges(List.of(slot, other), List.of());
+        slot.setOccupied(true);
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: One frame, each slot once with its final state, one version step
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000)).sendMessage(frames.capture());
+        verify(session, after(300).times(1)).sendMessage(any());
+        SlotUpdateMessage merged = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(merged.version()).isEqualTo(start + 1);
+        assertThat(merged.slots()).extracting(SlotView::id).containsExactly(1L, 2L);
+        assertThat(merged.slots().get(0).occupied()).isTrue();
+    }
+
+    @Test
+    void broadcastChanges_shouldLetRemovalWinWithinOneTick() throws Exception {
+        // Arrange: 100 ms tick
+        when(properties.getBroadcastTickMs()).thenReturn(100L);
+        publisher.shutdown();
+        publisher = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+        WebSocketSession session = openSession();
+        publisher.register(session);
+        ReflectionTestUtils.setField(slot, "id", 1L);
+
+        // Act: Slot updated and then deleted inside one tick
+        publisher.broadcastChanges(List.of(slot), List.of());
+        publisher.broadcastChanges(List.of(), List.of(slot));
+
+        // Assert: Only the removal is sent
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000)).sendMessage(frames.capture());
+        SlotUpdateMessage merged = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(merged.slots()).isEmpty();
+        assertThat(merged.removed()).containsExactly(1L);
+    }
+
+    private ParkingSlot slotInLot(long slotId, long lotId) {
+        ParkingLot lot = new ParkingLot();
+        ReflectionTestUtils.setField(lot, "id", lotId);
+        ParkingSlot inLot = new ParkingSlot();
+        ReflectionTestUtils.setField(inLot, "id", slotId);
+        inLot.setParkingLot(lot);
+        return inLot;
+    }
+
+    @Test
+    void broadcastChanges_shouldRouteDeltasToLotSubscribers() throws Exception {
+        // Arrange: One session per lot and one following every lot
+        ParkingSlot inFirstLot = slotInLot(1L, 10L);
+        ParkingSlot inSecondLot = slotInLot(2L, 20L);
+        WebSocketSession firstLot = openSession();
+        WebSocketSession secondLot = openSession();
+        WebSocketSession everything = openSession();
+        publisher.register(firstLot, Set.of(10L));
+        publisher.register(secondLot, Set.of(20L));
+        publisher.register(everything);
+
+        // Act: A change in each lot goes out as one broadcast
+        publisher.broadcastChanges(List.of(inFirstLot, inSecondLot), List.of());
+
+        // Assert: Lot sessions only see their own slot, the wildcard session sees both
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(firstLot, timeout(1000)).sendMessage(frames.capture());
+        assertThat(objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class).slots())
+            .extracting(SlotView::id).containsExactly(1L);
+        verify(secondLot, timeout(1000)).sendMessage(frames.capture());
+        assertThat(objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class).slots())
+            .extracting(SlotView::id).containsExactly(2L);
+        verify(everything, timeout(1000)).sendMessage(frames.capture());
+        assertThat(objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class).slots())
+            .extracting(SlotView::id).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void subscribe_shouldReplaceLotsAndSnapshotOnlyThoseLots() throws Exception {
+        // Arrange: Session that started on lot 10, store holding slots of two lots
+        ParkingSlot inFirstLot = slotInLot(1L, 10L);
+        ParkingSlot inSecondLot = slotInLot(2L, 20L);
+        when(occupancyStore.allSlots()).thenReturn(List.of(inSecondLot, inFirstLot));
+        WebSocketSession session = openSession();
+        publisher.register(session, Set.of(10L));
+
+        // Act: Switch to lot 20, then change lot 10
+        publisher.subscribe(session, Set.of(20L));
+        publisher.broadcastChanges(List.of(inFirstLot), List.of());
+
+        // Assert: Snapshot only holds lot 20, and the lot 10 change is not sent
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000)).sendMessage(frames.capture());
+        verify(session, after(200).times(1)).sendMessage(any());
+        SlotUpdateMessage snapshot = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(snapshot.type()).isEqualTo(SlotUpdateMessage.SNAPSHOT);
+        assertThat(snapshot.slots()).extracting(SlotView::id).containsExactly(2L);
+    }
+
+    @Test
+    void registerResuming_shouldSendOnlyMissedChangesMerged() throws Exception {
+        // Arrange: Client saw the current version, then three changes happened while it was away
+        ParkingSlot first = slotInLot(1L, 10L);
+        ParkingSlot second = slotInLot(2L, 10L);
+        long lastSeen = publisher.currentVersion();
+        publisher.broadcastChanges(List.of(first), List.of());
+        publisher.broadcastChanges(List.of(second), List.of());
+        publisher.broadcastChanges(List.of(), List.of(first));
+        WebSocketSession session = openSession();
+
+        // Act: Client reconnects with its last seen version
+        publisher.registerResuming(session, null, publisher.epoch(), lastSeen);
+
+        // Assert: One delta at the latest version, no snapshot
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000)).sendMessage(frames.capture());
+        SlotUpdateMessage missed = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(missed.type()).isEqualTo(SlotUpdateMessage.DELTA);
+        assertThat(missed.version()).isEqualTo(lastSeen + 3);
+        assertThat(missed.slots()).extracting(SlotView::id).containsExactly(2L);
+        assertThat(missed.removed()).containsExactly(1L);
+        verify(occupancyStore, never()).allSlots();
+    }
+
+    @Test
+    void registerResuming_shouldFallBackToSnapshotWhenGapWasEvicted() throws Exception {
+        // Arrange: More changes than the four the log keeps
+        when(occupancyStore.allSlots()).thenReturn(List.of(slot));
+        long lastSeen = publisher.currentVersion();
+        for (int i = 0; i < 5; i++) {
+            publisher.broadcastChanges(List.of(slot), List.of());
+        }
+        WebSocketSession session = openSession();
+
+        // Act: Client reconnects from before the retained range
+        publisher.registerResuming(session, null, publisher.epoch(), lastSeen);
+
+        // Assert: Full snapshot instead
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000)).sendMessage(frames.capture());
+        SlotUpdateMessage snapshot = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(snapshot.type()).isEqualTo(SlotUpdateMessage.SNAPSHOT);
+        assertThat(snapshot.version()).isEqualTo(lastSeen + 5);
+    }
+
+    @Test
+    void registerResuming_shouldFallBackToSnapshotForAnotherEpoch() throws Exception {
+        // Arrange: Another instance whose versions overlap this one's
+        when(occupancyStore.allSlots()).thenReturn(List.of(slot));
+        SlotWebSocketPublisher other = new SlotWebSocketPublisher(codecs, properties, occupancyStore);
+        long lastSeen = publisher.currentVersion();
+        publisher.broadcastChanges(List.of(slot), List.of());
+        WebSocketSession session = openSession();
+
+        // Act: Client resumes here with a token from the other instance
+        publisher.registerResuming(session, null, other.epoch(), lastSeen);
+        other.shutdown();
+
+        // Assert: Full snapshot carrying this instance's epoch
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session, timeout(1000)).sendMessage(frames.capture());
+        SlotUpdateMessage snapshot = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(snapshot.type()).isEqualTo(SlotUpdateMessage.SNAPSHOT);
+        assertThat(snapshot.epoch()).isEqualTo(publisher.epoch()).isNotEqualTo(other.epoch());
+    }
+
+    @Test
+    void registerWithSnapshot_shouldReuseSnapshotUntilVersionChanges() throws Exception {
+        // Arrange: Two clients connecting at the same version
+        when(occupancyStore.allSlots()).thenReturn(List.of(slot));
+        WebSocketSession first = openSession();
+        WebSocketSession second = openSession();
+
+        // Act: Both connect, then a change moves the version and the first one resubscribes
+        publisher.registerWithSnapshot(first, null);
+        publisher.registerWithSnapshot(second, null);
+        publisher.broadcastChanges(List.of(slot), List.of());
+        publisher.subscribe(first, null);
+
+        // Assert: Store read once per version, both clients got the same frame
+        ArgumentCaptor<TextMessage> firstFrames = ArgumentCaptor.forClass(TextMessage.class);
+        ArgumentCaptor<TextMessage> secondFrames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(first, timeout(1000).times(3)).sendMessage(firstFrames.capture());
+        verify(second, timeout(1000).times(2)).sendMessage(secondFrames.capture());
+        assertThat(secondFrames.getAllValues().get(0)).isSameAs(firstFrames.getAllValues().get(0));
+        verify(occupancyStore, times(2)).allSlots();
+    }
+
+    @Test
+    void registerWithSnapshot_shouldRebuildSnapshotAfterStoreReload() throws Exception {
+        // Arrange: Client connects before seeding, while the store is still empty
+        when(occupancyStore.allSlots()).thenReturn(List.of(), List.of(slot));
+        when(occupancyStore.generation()).thenReturn(1L);
+        WebSocketSession early = openSession();
+        WebSocketSession late = openSession();
+        publisher.registerWithSnapshot(early, null);
+
+        // Act: Seeding reloads the store, then another client connects
+        when(occupancyStore.generation()).thenReturn(2L);
+        publisher.registerWithSnapshot(late, null);
+
+        // Assert: The second client sees the seeded slot, not the cached empty snapshot
+        ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+        verify(late, timeout(1000)).sendMessage(frames.capture());
+        SlotUpdateMessage snapshot = objectMapper.readValue(frames.getValue().getPayload(), SlotUpdateMessage.class);
+        assertThat(snapshot.slots()).hasSize(1);
+    }
+
+    @Test
+    void registerWithSnapshot_shouldQueueSnapshotAheadOfConcurrentDeltas() throws Exception {
+        // Arrange: Changes broadcast back to back from another thread
+        when(occupancyStore.allSlots()).thenReturn(List.of(slot));
+        Thread broadcaster = new Thread(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                publisher.broadcastChanges(List.of(slot), List.of());
+            }
+        });
+        List<WebSocketSession> sessions = new ArrayList<>();
+
+        // Act: Clients connect while the changes keep coming
+        broadcaster.start();
+        for (int i = 0; i < 20; i++) {
+            WebSocketSession session = openSession();
+            publisher.registerWithSnapshot(session, null);
+            sessions.add(session);
+            Thread.yield();
+        }
+        broadcaster.join();
+
+        // Assert: Every client starts with the snapshot and only gets newer deltas after it
+        for (WebSocketSession session : sessions) {
+            ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+            verify(session, timeout(1000).atLeastOnce()).sendMessage(frames.capture());
+            List<SlotUpdateMessage> received = new ArrayList<>();
+            for (TextMessage frame : frames.getAllValues()) {
+                received.add(objectMapper.readValue(frame.getPayload(), SlotUpdateMessage.class));
+            }
+            assertThat(received.get(0).type()).isEqualTo(SlotUpdateMessage.SNAPSHOT);
+            assertThat(received.subList(1, received.size()))
+                .allSatisfy(delta -> assertThat(delta.version()).isGreaterThan(received.get(0).version()));
+        }
+    }
+
+    @Test
+    void registerResuming_shouldQueueMissedChangesAheadOfConcurrentDeltas() throws Exception {
+        // Arrange: Changes broadcast back to back from another thread
+        when(occupancyStore.allSlots()).thenReturn(List.of(slot));
+        Thread broadcaster = new Thread(() -> {
+            for (int i = 0; i < 2_000; i++) {
+                publisher.broadcastChanges(List.of(slot), List.of());
+            }
+        });
+        List<WebSocketSession> sessions = new ArrayList<>();
+
+        // Act: Clients resume from the version they last saw while the changes keep coming
+        broadcaster.start();
+        for (int i = 0; i < 20; i++) {
+            WebSocketSession session = openSession();
+            publisher.registerResuming(session, null, publisher.epoch(), publisher.currentVersion() - 1);
+            sessions.add(session);
+            Thread.yield();
+        }
+        broadcaster.join();
+
+        // Assert: Every client only gets deltas newer than its first frame after it
+        for (WebSocketSession session : sessions) {
+            ArgumentCaptor<TextMessage> frames = ArgumentCaptor.forClass(TextMessage.class);
+            verify(session, timeout(1000).atLeastOnce()).sendMessage(frames.capture());
+            List<SlotUpdateMessage> received = new ArrayList<>();
+            for (TextMessage frame : frames.getAllValues()) {
+                received.add(objectMapper.readValue(frame.getPayload(), SlotUpdateMessage.class));
+            }
+            assertThat(received.subList(1, received.size()))
+                .allSatisfy(delta -> assertThat(delta.version()).isGreaterThan(received.get(0).version()));
+        }
+    }
+
+    @Test
+    void broadcastChanges_shouldEncodeOncePerNegotiatedCodec() throws Exception {
+        // Arrange: Two JSON clients and one that negotiated CBOR
+        WebSocketSession json = openSession();
+        WebSocketSession otherJson = openSession();
+        WebSocketSession cbor = openSession();
+        when(cbor.getAcceptedProtocol()).thenReturn(CborSlotCodec.SUBPROTOCOL);
+        publisher.register(json);
+        publisher.register(otherJson);
+        publisher.register(cbor);
+
+        // Act: One change
+        publisher.broadcastChanges(List.of(slot), List.of());
+
+        // Assert: JSON encoded once as text, the CBOR client gets a binary frame
+        verify(json, timeout(1000)).sendMessage(any(TextMessage.class));
+        verify(otherJson, timeout(1000)).sendMessage(any(TextMessage.class));
+        ArgumentCaptor<BinaryMessage> binary = ArgumentCaptor.forClass(BinaryMessage.class);
+        verify(cbor, timeout(1000)).sendMessage(binary.capture());
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+        assertThat(binary.getValue().getPayloadLength()).isPositive();
+    }
+}